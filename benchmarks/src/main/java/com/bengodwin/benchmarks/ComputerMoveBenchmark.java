@@ -0,0 +1,35 @@
+package com.bengodwin.benchmarks;
+
+import com.bengodwin.game.Game;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// end to end Game.computerMove for each mode, including unpacking a fresh game in the position for every call
+// the MEDIUM sim cache is off by default so every call measures a full search, see ComputerMoveCachedBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComputerMoveBenchmark {
+    @Param({"EASY", "MEDIUM", "IMPOSSIBLE"})
+    private Game.Mode mode;
+
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    private Positions position;
+
+    @Setup
+    public void setUp() {
+        // build the shared position table before measuring
+        position.newGame(Game.Mode.IMPOSSIBLE);
+    }
+
+    @Benchmark
+    public int computerMove() {
+        Game game = position.newGame(mode);
+        game.setSeed(42);
+        return game.computerMove();
+    }
+}
@@ -0,0 +1,27 @@
+package com.bengodwin.benchmarks;
+
+import com.bengodwin.game.Game;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// MEDIUM's Game.computerMove with the shared sim cache turned on
+// after the first call every call is a cache hit plus the extra sims added to the cached entry, until the entry holds
+// the full number of sims for every space
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dtictactoe.weightCache.size=4096")
+public class ComputerMoveCachedBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    private Positions position;
+
+    @Benchmark
+    public int computerMove() {
+        Game game = position.newGame(Game.Mode.MEDIUM);
+        game.setSeed(42);
+        return game.computerMove();
+    }
+}
@@ -0,0 +1,43 @@
+package com.bengodwin.benchmarks;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.GameState;
+import com.bengodwin.game.GameStateLogic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// win detection, the call made at every step of a playout
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    private Positions position;
+
+    private Game game;
+    private int userBits;
+    private int computerBits;
+
+    @Setup
+    public void setUp() {
+        game = position.newGame(Game.Mode.IMPOSSIBLE);
+        userBits = position.getUserBits();
+        computerBits = position.getComputerBits();
+    }
+
+    // the side-effect free check used by the engines
+    @Benchmark
+    public GameState checkBitboards() {
+        return GameStateLogic.checkGameState(userBits, computerBits);
+    }
+
+    // the check used by Game, which also records the winning row
+    @Benchmark
+    public GameState checkGame() {
+        return GameStateLogic.checkGameState(game);
+    }
+}
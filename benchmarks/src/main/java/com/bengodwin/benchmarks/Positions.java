@@ -0,0 +1,40 @@
+package com.bengodwin.benchmarks;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.Player;
+
+// positions the benchmarks are run on, all with the computer to move
+// boards use 0 for empty, 1 for the user (X) and 2 for the computer (O)
+public enum Positions {
+    // the user has played in a corner, it is the computer's first move
+    OPENING(new int[][]{{1, 0, 0}, {0, 0, 0}, {0, 0, 0}}, true),
+    // opposite corners against the center
+    MIDGAME(new int[][]{{1, 0, 0}, {0, 2, 0}, {0, 0, 1}}, false),
+    // four empty spaces, no immediate win for either side
+    ENDGAME(new int[][]{{1, 2, 0}, {0, 2, 1}, {0, 1, 0}}, false);
+
+    private final int packed;
+
+    Positions(int[][] board, boolean firstMove) {
+        Game game = new Game();
+        game.setBoard(board);
+        game.setLastPlayed(Player.USER);
+        game.setFirstMove(firstMove);
+        packed = game.pack();
+    }
+
+    // returns a new game in this position in the given mode
+    public Game newGame(Game.Mode mode) {
+        Game game = Game.unpack(packed);
+        game.setMode(mode);
+        return game;
+    }
+
+    public int getUserBits() {
+        return packed & 0x1FF;
+    }
+
+    public int getComputerBits() {
+        return (packed >>> 9) & 0x1FF;
+    }
+}
@@ -0,0 +1,59 @@
+package com.bengodwin.benchmarks;
+
+import com.bengodwin.game.Player;
+import com.bengodwin.game.Rollout;
+import com.bengodwin.game.SimGame;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// the pieces of a Monte Carlo move: creating a SimGame, looking for winning moves and playing a game out
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimGameBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    private Positions position;
+
+    private int userBits;
+    private int computerBits;
+    private SimGame simGame;
+    private Random random;
+    private Rollout rollout;
+
+    @Setup
+    public void setUp() {
+        userBits = position.getUserBits();
+        computerBits = position.getComputerBits();
+        simGame = new SimGame(userBits, computerBits, Player.USER);
+        random = new Random(42);
+        rollout = Rollout.forCurrentThread();
+        rollout.setSeed(42);
+    }
+
+    @Benchmark
+    public SimGame construct() {
+        return new SimGame(userBits, computerBits, Player.USER);
+    }
+
+    @Benchmark
+    public int winningMove() {
+        return simGame.winningMove(Player.COMPUTER) + simGame.winningMove(Player.USER);
+    }
+
+    // SimGame.simulate, which seeds the thread's rollout from the generator on every call
+    @Benchmark
+    public int simulate() {
+        return simGame.simulate(random);
+    }
+
+    // the rollout kernel on its own, as used by MonteCarloStrategy batches
+    @Benchmark
+    public int playout() {
+        return rollout.playout(userBits, computerBits, true);
+    }
+}
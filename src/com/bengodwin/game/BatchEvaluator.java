@@ -0,0 +1,166 @@
+package com.bengodwin.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// answers the best move and score for many positions in one call without changing any game
+//
+// positions are given as ints from GameSnapshot.getPacked (or Game.pack) and are evaluated for their side to move.
+// Positions are grouped by position index so repeated positions are looked up once and the position table is read
+// in order, then the answers are copied back to every position in the batch. Small batches are grouped by sorting,
+// batches of BUCKET_THRESHOLD or more positions by a pass over every position index, which costs the same for any
+// batch size, and batches of PARALLEL_THRESHOLD or more positions are worked on by every core
+public class BatchEvaluator {
+    public static final int BUCKET_THRESHOLD = 1024;
+    public static final int PARALLEL_THRESHOLD = 65536;
+
+    private static final PositionTable TABLE = PositionTable.getInstance();
+    private static final NegamaxSolver SOLVER = new NegamaxSolver();
+
+    // the moves and scores for a batch, in the same order as the positions given
+    public static final class Result {
+        private final int[] moves;
+        private final int[] values;
+        private final int uniqueCount;
+
+        private Result(int[] moves, int[] values, int uniqueCount) {
+            this.moves = moves;
+            this.values = values;
+            this.uniqueCount = uniqueCount;
+        }
+
+        public int size() {
+            return moves.length;
+        }
+
+        // the best space for the side to move in the position, or -1 if the game is already over
+        public int getMove(int i) {
+            return moves[i];
+        }
+
+        // the negamax score of the position for the side to move, see NegamaxSolver
+        public int getValue(int i) {
+            return values[i];
+        }
+
+        // number of different positions in the batch
+        public int getUniqueCount() {
+            return uniqueCount;
+        }
+    }
+
+    private BatchEvaluator() {
+    }
+
+    public static Result evaluate(List<GameSnapshot> positions) {
+        int[] packed = new int[positions.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = positions.get(i).getPacked();
+        }
+        return evaluate(packed);
+    }
+
+    public static Result evaluate(int[] packed) {
+        return packed.length < BUCKET_THRESHOLD ? evaluateSorted(packed) : evaluateBucketed(packed);
+    }
+
+    // small batches sort keys holding the position index in the high half and the place in the batch in the low half
+    private static Result evaluateSorted(int[] packed) {
+        int count = packed.length;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) GameSnapshot.of(packed[i]).positionIndex() << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        int[] moves = new int[count];
+        int[] values = new int[count];
+        int unique = 0;
+        int answer = 0;
+        for (int i = 0; i < count; i++) {
+            int place = (int) keys[i];
+            // only the first of a run of equal positions is looked up
+            if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+                answer = answer(packed[place]);
+                unique++;
+            }
+            moves[place] = move(answer);
+            values[place] = value(answer);
+        }
+        return new Result(moves, values, unique);
+    }
+
+    // large batches note the first place each position index appears, look up every index that appears in index
+    // order and then copy the answers out, spreading each step across the cores
+    private static Result evaluateBucketed(int[] packed) {
+        int count = packed.length;
+        boolean parallel = count >= PARALLEL_THRESHOLD;
+
+        int[] indexes = new int[count];
+        places(count, parallel).forEach(i -> indexes[i] = GameSnapshot.of(packed[i]).positionIndex());
+
+        // first place in the batch plus 1 for every position index, 0 for indexes that aren't in the batch
+        int[] firstPlace = new int[Bitboard.POSITION_COUNT];
+        for (int i = count - 1; i >= 0; i--) {
+            firstPlace[indexes[i]] = i + 1;
+        }
+        int[] present = IntStream.range(0, Bitboard.POSITION_COUNT).filter(index -> firstPlace[index] != 0).toArray();
+
+        int[] answers = new int[Bitboard.POSITION_COUNT];
+        IntStream lookups = Arrays.stream(present);
+        (parallel ? lookups.parallel() : lookups).forEach(index -> answers[index] = answer(packed[firstPlace[index] - 1]));
+
+        int[] moves = new int[count];
+        int[] values = new int[count];
+        places(count, parallel).forEach(i -> {
+            int answer = answers[indexes[i]];
+            moves[i] = move(answer);
+            values[i] = value(answer);
+        });
+        return new Result(moves, values, present.length);
+    }
+
+    private static IntStream places(int count, boolean parallel) {
+        IntStream places = IntStream.range(0, count);
+        return parallel ? places.parallel() : places;
+    }
+
+    // returns the best move and score for the side to move in one int, see move and value
+    private static int answer(int packed) {
+        GameSnapshot position = GameSnapshot.of(packed);
+        boolean computerToMove = position.getSideToMove() == Player.COMPUTER;
+        int ownBits = computerToMove ? position.getComputerBits() : position.getPlayerBits();
+        int opponentBits = computerToMove ? position.getPlayerBits() : position.getComputerBits();
+
+        int move = -1;
+        int value;
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        if (GameStateLogic.hasWon(opponentBits)) {
+            value = -(1 + Integer.bitCount(emptyBits));
+        } else if (GameStateLogic.hasWon(ownBits)) {
+            // only possible on a board that wasn't reached by taking turns
+            value = 1 + Integer.bitCount(emptyBits);
+        } else if (emptyBits == 0) {
+            value = 0;
+        } else {
+            move = TABLE.bestMove(ownBits, opponentBits);
+            if (move > 0) {
+                value = TABLE.value(ownBits, opponentBits);
+            } else {
+                // positions that can't be reached by alternating moves aren't in the table
+                move = SOLVER.bestMove(ownBits, opponentBits);
+                value = SOLVER.solve(ownBits, opponentBits);
+            }
+        }
+        return value << 8 | move & 0xFF;
+    }
+
+    private static int move(int answer) {
+        return (byte) answer;
+    }
+
+    private static int value(int answer) {
+        return answer >> 8;
+    }
+}
@@ -0,0 +1,74 @@
+package com.bengodwin.game;
+
+import java.util.ArrayList;
+
+// helper methods for working with 9-bit boards, where bit (space - 1) represents the space number 1 - 9
+public class Bitboard {
+    // mask with a bit set for all nine spaces on the board
+    public static final int FULL = 0x1FF;
+
+    // number of different boards when each space is empty, owned by one side or owned by the other (3^9)
+    public static final int POSITION_COUNT = 19683;
+
+    // for every bitboard, the sum of 3^(space - 1) for each set space, used to build base 3 position indexes
+    private static final int[] BASE_3 = new int[FULL + 1];
+
+    static {
+        for (int bits = 1; bits <= FULL; bits++) {
+            int lowest = Integer.numberOfTrailingZeros(bits);
+            int power = 1;
+            for (int i = 0; i < lowest; i++) power *= 3;
+            BASE_3[bits] = BASE_3[bits & (bits - 1)] + power;
+        }
+    }
+
+    // returns the bit for the given space number
+    public static int bit(int space) {
+        return 1 << (space - 1);
+    }
+
+    // returns true if the space is on the board and is not set in the occupied bits
+    public static boolean isEmpty(int occupiedBits, int space) {
+        return space >= 1 && space <= 9 && (occupiedBits & bit(space)) == 0;
+    }
+
+    // returns the bits for every space that is not occupied
+    public static int emptyBits(int occupiedBits) {
+        return ~occupiedBits & FULL;
+    }
+
+    // returns the lowest space number set in the bits, bits must not be 0
+    public static int lowestSpace(int bits) {
+        return Integer.numberOfTrailingZeros(bits) + 1;
+    }
+
+    // returns the space number of the nth set bit (starting at 0), counting up from space 1
+    public static int nthSpace(int bits, int n) {
+        for (int i = 0; i < n; i++) {
+            bits &= bits - 1;
+        }
+        return lowestSpace(bits);
+    }
+
+    // returns the token in the space, 0 for empty, 1 for the user and 2 for the computer
+    public static int tokenAt(int playerBits, int computerBits, int space) {
+        if ((playerBits & bit(space)) != 0) return 1;
+        if ((computerBits & bit(space)) != 0) return 2;
+        return 0;
+    }
+
+    // returns a unique index from 0 to POSITION_COUNT - 1 for the board, where each space is a base 3 digit
+    // that is 0 when empty, 1 for the first bitboard and 2 for the second bitboard
+    public static int positionIndex(int firstBits, int secondBits) {
+        return BASE_3[firstBits] + 2 * BASE_3[secondBits];
+    }
+
+    // returns a list of the space numbers set in the bits in ascending order
+    public static ArrayList<Integer> toSpaceList(int bits) {
+        ArrayList<Integer> spaces = new ArrayList<>(Integer.bitCount(bits));
+        for (int remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            spaces.add(lowestSpace(remaining));
+        }
+        return spaces;
+    }
+}
@@ -1,26 +1,34 @@
 package com.bengodwin.game;
 
+import com.bengodwin.metrics.EngineMetrics;
+
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Game {
     public enum Mode {
         EASY, MEDIUM, IMPOSSIBLE, TWO_PLAYER
     }
 
-    private static final ArrayList<Integer> corners = new ArrayList<>();
-    private static final ArrayList<Integer> middles = new ArrayList<>();
-    private static final int center = 5;
-
     public static Map<Integer, Character> gameSymbols;
 
-    private int[][] board;
-    private ArrayList<Integer> emptySpaces;
+    // bitboards for each player, bit (space - 1) is set when that player has a token in the space
+    private int playerBits;
+    private int computerBits;
 
     private GameState gameState;
     private Player lastPlayed;
     private int lastSpace;
+    // every space played so far in order, 4 bits per move starting from the lowest bits
+    private long moves;
+    private int moveCount;
     private boolean firstMove;
     private Mode mode;
+    private MoveStrategy strategy;
+    // true when setStrategy replaced the mode's default strategy
+    private boolean customStrategy;
+    private OpeningBook openingBook;
+    private Random random;
 
     private int winningRowStart;
     private int winningRowEnd;
@@ -31,29 +39,16 @@ public class Game {
         gameSymbols.put(0, ' ');
         gameSymbols.put(1, 'X');
         gameSymbols.put(2, 'O');
-
-        int[] cornersArr = {1, 3, 7, 9};
-        for (int corner : cornersArr) {
-            corners.add(corner);
-        }
-
-        int[] middlesArr = {2, 4, 6, 8};
-        for (int middle : middlesArr) {
-            middles.add(middle);
-        }
     }
 
     public Game() {
-        this.board = new int[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 0}};
+        this.playerBits = 0;
+        this.computerBits = 0;
         this.gameState = GameState.UNFINISHED;
         this.lastPlayed = Player.COMPUTER;
-        this.emptySpaces = new ArrayList<>();
-        // initialize the empty spaces list to include all spaces
-        for (int i = 1; i <= 9; i++) {
-            emptySpaces.add(i);
-        }
         this.firstMove = true;
-        this.mode = Mode.IMPOSSIBLE;
+        this.openingBook = OpeningBook.shared();
+        this.setMode(Mode.IMPOSSIBLE);
         this.lastSpace = -1;
         this.winningRowStart = -1;
         this.winningRowEnd = -1;
@@ -66,7 +61,7 @@ public class Game {
             return false;
         }
         // do not process the move if the selected space is already full
-        if (emptySpaces.indexOf(space) < 0) {
+        if (!Bitboard.isEmpty(getOccupiedBits(), space)) {
             return false;
         }
         // do not process the move if the game is finished
@@ -74,17 +69,13 @@ public class Game {
             return false;
         }
 
-        // set the value of the specified space to 1 (the user value)
-        int row = (space - 1) / 3;
-        int col = (space - 1) % 3;
-        board[row][col] = 1;
-
-        // remove the space from the emptySpaces list
-        emptySpaces.remove((Integer) space);
+        // set the bit for the specified space on the user's board, which also removes it from the empty spaces
+        playerBits |= Bitboard.bit(space);
 
         this.setLastPlayed(Player.USER);
         this.setGameState(GameStateLogic.checkGameState(this));
         this.setLastSpace(space);
+        addMove(space);
 
         return true;
     }
@@ -93,7 +84,7 @@ public class Game {
     public int enterTwoPlayerMove(int space) {
         if (getMode() != Mode.TWO_PLAYER) return -1;
         // do not process the move if the selected space is already full
-        if (emptySpaces.indexOf(space) < 0) {
+        if (!Bitboard.isEmpty(getOccupiedBits(), space)) {
             return -1;
         }
         // do not process the move if the game is finished
@@ -101,17 +92,14 @@ public class Game {
             return -1;
         }
 
-        int row = (space - 1) / 3;
-        int col = (space - 1) % 3;
-
         int token = getLastPlayed() == Player.USER ? 2 : 1;
-        board[row][col] = token;
-
-        emptySpaces.remove((Integer) space);
+        if (token == 1) playerBits |= Bitboard.bit(space);
+        else computerBits |= Bitboard.bit(space);
 
         this.setLastPlayed(getLastPlayed() == Player.USER ? Player.COMPUTER : Player.USER);
         this.setGameState(GameStateLogic.checkGameState(this));
         this.setLastSpace(space);
+        addMove(space);
 
         return token;
     }
@@ -127,133 +115,85 @@ public class Game {
             return -1;
         }
 
-        int selectedSpace;
-
-        // for easy mode, pick a random space from the empty spaces list
-        if (mode == Mode.EASY) selectedSpace = emptySpaces.get((new Random()).nextInt(emptySpaces.size()));
-        else {
-            // for medium or impossible mode, use the specified first moves for each mode if it is the computer's first move
-            if (isFirstMove()) {
-                selectedSpace = selectFirst();
-            // for either medium or impossible mode, if it is not the first computer move
-            // 1. Check if there is a winning move for the computer, if so make that move
-            // 2. Check if there is a winning move for the user, if so play in that space
-            // 3. Simulate games for each empty space and pick the one that has he best results
-            } else {
-                SimGame aGame = createGameBoard();
-
-                // look for a winning offensive move and defensive move to save an opponent win
-                int winningCpuMove = aGame.winningMove(Player.COMPUTER);
-                int winningPlayerMove = aGame.winningMove(Player.USER);
-
-                if (winningCpuMove == -1 && winningPlayerMove == -1) { // no winning move, perform simulated games to select best move
-
-                    // 1. Create new array, same size as empty spaces, and assign a starting weight of zero for each space
-                    int[] weightArray = new int[emptySpaces.size()];
-                    for (int i = 0; i < weightArray.length; i++) {
-                        weightArray[i] = 0;
-                    }
-
-                    // 2. for each index in emptySpaces, sim 25 games, adding the result of each to the weightArray index for that space
-                    // if the sim is a win, the weight will increase by 1, loss will decrease by 1, draw will stay the same
-                    int numberOfSims = 1000;
-
-                    for (int i = 0; i < emptySpaces.size(); i++) {
-                        for (int j = 0; j < numberOfSims; j++) {
-                            SimGame gameBoard = createGameBoard();
-                            gameBoard.addMove(emptySpaces.get(i), Player.COMPUTER);
-                            int weight = gameBoard.simulate();
-                            weightArray[i] += weight;
-                        }
-                    }
-
-                    // 3. select the index with the highest weight and get the corresponding empty space from emptySpaces
-                    int maxIndex = 0;
-                    for (int i = 1; i < weightArray.length; i++) {
-                        if (weightArray[i] > weightArray[maxIndex]) maxIndex = i;
-                    }
-
-                    selectedSpace = emptySpaces.get(maxIndex);
-
-                } else { // there is a winning move, select that space
-                    if (winningCpuMove > -1)
-                        selectedSpace = winningCpuMove; // if there is a winning computer move, use that
-                    else
-                        selectedSpace = winningPlayerMove; // if there is not a winning computer move, defend against a winning player move
-                }
-            }
-        }
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        long startBytes = EngineMetrics.ENABLED ? EngineMetrics.threadAllocatedBytes() : 0;
 
-        // 4. place a computer marker at the selected space, return the space number
-        int row = (selectedSpace - 1) / 3;
-        int col = (selectedSpace - 1) % 3;
-        board[row][col] = 2;
+        // play the book move if the position is in the opening book for this mode, otherwise ask the strategy for
+        // the current mode to pick a space from the computer's point of view
+        int selectedSpace = openingBook != null && openingBook.covers(mode) ? openingBook.bestMove(computerBits, playerBits) : -1;
+        if (selectedSpace < 0) selectedSpace = strategy.selectMove(computerBits, playerBits, getRandom());
 
-        emptySpaces.remove((Integer) selectedSpace);
+        // move latency is recorded by mode, so moves from a strategy set with setStrategy aren't recorded
+        if (EngineMetrics.ENABLED && !customStrategy) {
+            EngineMetrics.recordMove(mode, System.nanoTime() - start, EngineMetrics.threadAllocatedBytes() - startBytes);
+        }
+        setFirstMove(false);
+
+        // place a computer marker at the selected space, return the space number
+        computerBits |= Bitboard.bit(selectedSpace);
 
         this.setLastPlayed(Player.COMPUTER);
         this.setGameState(GameStateLogic.checkGameState(this));
         this.setLastSpace(selectedSpace);
+        addMove(selectedSpace);
 
         return selectedSpace;
     }
 
-    // if it is the computer's first move, return the appropriate move for medium or impossible mode
-    private int selectFirst() {
-        int selectedSpace;
-
-        // first moves for impossible mode
-        if (mode == Mode.IMPOSSIBLE) {
-            // if user played in center space, play in space 3
-            if (lastSpace == 5) {
-                selectedSpace = 3;
-            // if user played in a middle space, play in an adjacent corner
-            } else if (lastSpace == 2 || lastSpace == 4) {
-                selectedSpace = 1;
-            } else if (lastSpace == 6 || lastSpace == 8) {
-                selectedSpace = 9;
-            // if user played in a corner space, play in the middle space
-            } else {
-                selectedSpace = 5;
-            }
-        } else {
-            // moves for medium mode
-            int userSpaceRow = (lastSpace - 1) / 3;
-            int userSpaceCol = (lastSpace - 1) % 3;
-
-            // if the user played in a corner, play in an any other outside space
-            if (corners.contains(lastSpace)) {
-                ArrayList<Integer> edgeOptions = new ArrayList<>();
-                for (int i = 1; i < 9; i++) if (i != lastSpace && i != center) edgeOptions.add(i);
-                selectedSpace = edgeOptions.get((new Random()).nextInt(edgeOptions.size()));
-            } else if (middles.contains(lastSpace)) {
-                // if the user played in a middle outside space (not a corner or the middle space on the board),
-                // play in any other outside space that does not share a row or column with the user's space
-                ArrayList<Integer> rowOptions = new ArrayList<>();
-                ArrayList<Integer> colOptions = new ArrayList<>();
-                for (int i = 0; i < 3; i++) if (i != userSpaceRow) rowOptions.add(i);
-                for (int j = 0; j < 3; j++) if (j != userSpaceCol) colOptions.add(j);
-                selectedSpace = (rowOptions.get((new Random()).nextInt(rowOptions.size())) * 3) + colOptions.get((new Random()).nextInt(colOptions.size())) + 1;
-            } else {
-                // if the user played in the center space, play in any outside middle space
-                selectedSpace = middles.get((new Random()).nextInt(middles.size()));
-            }
-        }
+    private void addMove(int space) {
+        moves |= (long) space << (4 * moveCount);
+        moveCount++;
+    }
 
-        setFirstMove(false);
+    // number of moves played by both sides since the game started
+    // only moves entered through enterMove, enterTwoPlayerMove and computerMove are counted, not boards set directly
+    public int getMoveCount() {
+        return moveCount;
+    }
 
-        return selectedSpace;
+    // returns the space played by the given move, counting from 0 for the first move of the game
+    public int getMove(int index) {
+        if (index < 0 || index >= moveCount) throw new IndexOutOfBoundsException("Move " + index + " of " + moveCount);
+        return (int) (moves >>> (4 * index)) & 0xF;
+    }
+
+    // packs the state of the game into an int so many games can be stored compactly, see unpack
+    // bits 0 - 8 are the user's bitboard, 9 - 17 the computer's bitboard, 18 is set when the user played last,
+    // 19 - 20 are the mode, 21 is the first move flag and 22 - 25 are the last space played (0 for none)
+    // the strategy, random generator, move history and game state are not stored, the state is worked out again
+    // from the board
+    public int pack() {
+        return playerBits
+                | computerBits << 9
+                | (lastPlayed == Player.USER ? 1 : 0) << 18
+                | mode.ordinal() << 19
+                | (firstMove ? 1 : 0) << 21
+                | Math.max(lastSpace, 0) << 22;
+    }
+
+    // returns an immutable copy of the board and turn that is safe to share with other threads
+    public GameSnapshot snapshot() {
+        return GameSnapshot.of(pack());
     }
 
-    // create a new SimGame that shares the state of the current game
-    private SimGame createGameBoard() {
-        return new SimGame(board, emptySpaces, lastPlayed);
+    // creates a game from an int made by pack, using the default strategy for its mode
+    public static Game unpack(int packed) {
+        Game game = new Game();
+        game.setBits(packed & Bitboard.FULL, (packed >>> 9) & Bitboard.FULL);
+        game.setLastPlayed((packed >>> 18 & 1) == 1 ? Player.USER : Player.COMPUTER);
+        game.setMode(Mode.values()[packed >>> 19 & 3]);
+        game.setFirstMove((packed >>> 21 & 1) == 1);
+        int lastSpace = packed >>> 22 & 0xF;
+        game.setLastSpace(lastSpace == 0 ? -1 : lastSpace);
+        game.setGameState(GameStateLogic.checkGameState(game));
+        return game;
     }
 
     // used to print out the current tic-tac-toe board for the user when playing in the command line
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder().append("\n");
+        int[][] board = getBoard();
 
         for (int i = 0; i < board.length; i++) {
             for (int j = 0; j < board[0].length; j++) {
@@ -303,7 +243,7 @@ public class Game {
         System.out.println("\nLast Move: " + this.lastPlayed);
         System.out.println("Game State: " + this.gameState);
         System.out.println("Empty Spaces:");
-        for (int space : emptySpaces) {
+        for (int space : getEmptySpaces()) {
             System.out.print(space + "\t");
         }
         System.out.println();
@@ -321,11 +261,57 @@ public class Game {
         return mode;
     }
 
+    // sets the mode and switches the computer to the default strategy for that mode
     public void setMode(Mode mode) {
         this.mode = mode;
+        this.strategy = defaultStrategy(mode);
+        this.customStrategy = false;
     }
 
+    // returns a new instance of the strategy used by the computer in the given mode
+    public static MoveStrategy defaultStrategy(Mode mode) {
+        switch (mode) {
+            case EASY:
+                return new RandomStrategy();
+            case IMPOSSIBLE:
+                // the table is shared by every game, it is built the first time it is used
+                return PositionTable.getInstance();
+            default:
+                // with the shared cache turned on, medium games share their sim results so positions seen in earlier
+                // games aren't searched again
+                MonteCarloStrategy monteCarlo = new MonteCarloStrategy();
+                monteCarlo.setCache(WeightCache.shared());
+                return monteCarlo;
+        }
+    }
+
+    public MoveStrategy getStrategy() {
+        return strategy;
+    }
+
+    // overrides the strategy chosen by setMode, the mode itself is unchanged
+    public void setStrategy(MoveStrategy strategy) {
+        this.strategy = strategy;
+        this.customStrategy = true;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    // sets the book checked before the strategy is asked for a move, null to always use the strategy
+    // games start with the shared book, see OpeningBook.shared
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    // builds a 3x3 view of the board where 0 is empty, 1 is the user and 2 is the computer
+    // the returned array is a copy, changes to it do not affect the game
     public int[][] getBoard() {
+        int[][] board = new int[3][3];
+        for (int space = 1; space <= 9; space++) {
+            board[(space - 1) / 3][(space - 1) % 3] = Bitboard.tokenAt(playerBits, computerBits, space);
+        }
         return board;
     }
 
@@ -345,16 +331,39 @@ public class Game {
         this.winningRowEnd = winningRowEnd;
     }
 
+    // builds a list of the empty space numbers in ascending order
+    // the returned list is a copy, changes to it do not affect the game
     public ArrayList<Integer> getEmptySpaces() {
-        return emptySpaces;
+        return Bitboard.toSpaceList(Bitboard.emptyBits(getOccupiedBits()));
     }
 
+    // sets the board from a 3x3 array where 0 is empty, 1 is the user and 2 is the computer
     public void setBoard(int[][] board) {
-        this.board = board;
+        int player = 0;
+        int computer = 0;
+        for (int space = 1; space <= 9; space++) {
+            int token = board[(space - 1) / 3][(space - 1) % 3];
+            if (token == 1) player |= Bitboard.bit(space);
+            if (token == 2) computer |= Bitboard.bit(space);
+        }
+        setBits(player, computer);
     }
 
-    public void setEmptySpaces(ArrayList<Integer> emptySpaces) {
-        this.emptySpaces = emptySpaces;
+    public int getPlayerBits() {
+        return playerBits;
+    }
+
+    public int getComputerBits() {
+        return computerBits;
+    }
+
+    public int getOccupiedBits() {
+        return playerBits | computerBits;
+    }
+
+    protected void setBits(int playerBits, int computerBits) {
+        this.playerBits = playerBits;
+        this.computerBits = computerBits;
     }
 
     public void setLastPlayed(Player lastPlayed) {
@@ -365,6 +374,27 @@ public class Game {
         return lastPlayed;
     }
 
+    // returns the generator used for every random choice the computer makes in this game
+    // without one set, the calling thread's ThreadLocalRandom is used
+    public Random getRandom() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    // sets the generator used for the computer's random choices, null to go back to ThreadLocalRandom
+    // a generator is not shared between threads, so only one thread should call computerMove at a time
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    // seeds the computer's random choices so the same moves from the user always get the same replies
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public int getLastSpace() {
+        return lastSpace;
+    }
+
     public void setLastSpace(int lastSpace) {
         this.lastSpace = lastSpace;
     }
@@ -0,0 +1,146 @@
+package com.bengodwin.game;
+
+import java.util.ArrayList;
+
+// immutable copy of a game's board and turn, held in the single int made by Game.pack
+//
+// a snapshot can be handed to other threads, kept in collections or used as a map key without copying anything.
+// The game state and winning row are worked out from the board when they are asked for. The strategy and random
+// generator of the game are not part of a snapshot
+public final class GameSnapshot {
+    private final int packed;
+
+    private GameSnapshot(int packed) {
+        this.packed = packed;
+    }
+
+    // creates a snapshot from an int made by Game.pack or getPacked
+    public static GameSnapshot of(int packed) {
+        return new GameSnapshot(packed);
+    }
+
+    // returns the int this snapshot is held in, the same as calling pack on the game it was taken from
+    public int getPacked() {
+        return packed;
+    }
+
+    public int getPlayerBits() {
+        return packed & Bitboard.FULL;
+    }
+
+    public int getComputerBits() {
+        return packed >>> 9 & Bitboard.FULL;
+    }
+
+    public int getOccupiedBits() {
+        return getPlayerBits() | getComputerBits();
+    }
+
+    public int getEmptyBits() {
+        return Bitboard.emptyBits(getOccupiedBits());
+    }
+
+    public Player getLastPlayed() {
+        return (packed >>> 18 & 1) == 1 ? Player.USER : Player.COMPUTER;
+    }
+
+    // the side whose turn it is, the computer in one player modes or the O player in two player mode
+    public Player getSideToMove() {
+        return getLastPlayed() == Player.USER ? Player.COMPUTER : Player.USER;
+    }
+
+    public Game.Mode getMode() {
+        return Game.Mode.values()[packed >>> 19 & 3];
+    }
+
+    public boolean isFirstMove() {
+        return (packed >>> 21 & 1) == 1;
+    }
+
+    // the last space played, or -1 if nothing has been played
+    public int getLastSpace() {
+        int lastSpace = packed >>> 22 & 0xF;
+        return lastSpace == 0 ? -1 : lastSpace;
+    }
+
+    public GameState getGameState() {
+        return GameStateLogic.checkGameState(getPlayerBits(), getComputerBits());
+    }
+
+    // returns the first space of the winning row, or -1 if nobody has won
+    public int getWinningRowStart() {
+        int line = winningLine();
+        return line > -1 ? GameStateLogic.lineStart(line) : -1;
+    }
+
+    // returns the last space of the winning row, or -1 if nobody has won
+    public int getWinningRowEnd() {
+        int line = winningLine();
+        return line > -1 ? GameStateLogic.lineEnd(line) : -1;
+    }
+
+    private int winningLine() {
+        int line = GameStateLogic.winningLine(getPlayerBits());
+        return line > -1 ? line : GameStateLogic.winningLine(getComputerBits());
+    }
+
+    // returns the token in the space, 0 for empty, 1 for the user and 2 for the computer
+    public int tokenAt(int space) {
+        return Bitboard.tokenAt(getPlayerBits(), getComputerBits(), space);
+    }
+
+    // builds a 3x3 view of the board where 0 is empty, 1 is the user and 2 is the computer
+    public int[][] getBoard() {
+        int[][] board = new int[3][3];
+        for (int space = 1; space <= 9; space++) {
+            board[(space - 1) / 3][(space - 1) % 3] = tokenAt(space);
+        }
+        return board;
+    }
+
+    // builds a list of the empty space numbers in ascending order
+    public ArrayList<Integer> getEmptySpaces() {
+        return Bitboard.toSpaceList(getEmptyBits());
+    }
+
+    // base 3 index of the board from the point of view of the side to move, see Bitboard.positionIndex
+    public int positionIndex() {
+        return getSideToMove() == Player.USER
+                ? Bitboard.positionIndex(getPlayerBits(), getComputerBits())
+                : Bitboard.positionIndex(getComputerBits(), getPlayerBits());
+    }
+
+    // returns the snapshot after the side to move plays in space, the space must be empty and the game unfinished
+    public GameSnapshot withMove(int space) {
+        if (!Bitboard.isEmpty(getOccupiedBits(), space) || getGameState() != GameState.UNFINISHED) {
+            throw new IllegalArgumentException("Space " + space + " can't be played");
+        }
+        boolean userMoves = getSideToMove() == Player.USER;
+        int bit = Bitboard.bit(space) << (userMoves ? 0 : 9);
+        // clear the last played, first move and last space fields before setting them again
+        int next = packed & ~(1 << 18 | 1 << 21 | 0xF << 22);
+        // like Game, the first move flag is cleared once the computer has played, but not by two player moves
+        int firstMove = isFirstMove() && (userMoves || getMode() == Game.Mode.TWO_PLAYER) ? 1 : 0;
+        return new GameSnapshot(next | bit | (userMoves ? 1 : 0) << 18 | firstMove << 21 | space << 22);
+    }
+
+    // creates a new game in this position, using the default strategy for its mode
+    public Game toGame() {
+        return Game.unpack(packed);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GameSnapshot && ((GameSnapshot) o).packed == packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(packed);
+    }
+
+    @Override
+    public String toString() {
+        return toGame().toString();
+    }
+}
@@ -1,89 +1,85 @@
 package com.bengodwin.game;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-
 public class GameStateLogic {
-    private static Map<Integer, GameState> player;
+    // the eight winning lines as bitboards - rows, then columns, then the two diagonals
+    public static final int[] WIN_LINES = {
+            0x007, 0x038, 0x1C0,
+            0x049, 0x092, 0x124,
+            0x111, 0x054
+    };
+
+    // the first and last space of each winning line, used to draw the line crossing out a win
+    private static final int[] LINE_START = {1, 4, 7, 1, 2, 3, 1, 7};
+    private static final int[] LINE_END = {3, 6, 9, 7, 8, 9, 9, 3};
+
+    // for every possible bitboard of one player's tokens, the index of the first winning line it contains or -1
+    private static final byte[] WINNING_LINE = new byte[Bitboard.FULL + 1];
+    // for every possible bitboard of one player's tokens, the spaces that would give them a line they have two spaces of
+    private static final short[] THREATS = new short[Bitboard.FULL + 1];
 
     static {
-        player = new HashMap<>();
-        player.put(1, GameState.PLAYER_WON);
-        player.put(2, GameState.COMPUTER_WON);
+        for (int bits = 0; bits <= Bitboard.FULL; bits++) {
+            WINNING_LINE[bits] = -1;
+            for (int line = 0; line < WIN_LINES.length; line++) {
+                if ((bits & WIN_LINES[line]) == WIN_LINES[line]) {
+                    WINNING_LINE[bits] = (byte) line;
+                    break;
+                }
+            }
+            for (int line : WIN_LINES) {
+                int missing = line & ~bits;
+                if (Integer.bitCount(missing) == 1) THREATS[bits] |= missing;
+            }
+        }
     }
 
+    // checks the state of the game and records the winning row on the game if there is a winner
     public static GameState checkGameState(Game game) {
-        int[][] board = game.getBoard();
-        ArrayList<Integer> emptySpaces = game.getEmptySpaces();
+        int playerBits = game.getPlayerBits();
+        int computerBits = game.getComputerBits();
 
-        // check rows, if there is a winner get the value from a cell in the winning row and get the player from it
-        int row = checkRows(game);
-        if (row > -1) return player.get(board[row][0]);
+        int line = winningLine(playerBits);
+        if (line < 0) line = winningLine(computerBits);
+        if (line > -1) {
+            game.setWinningRowStart(LINE_START[line]);
+            game.setWinningRowEnd(LINE_END[line]);
+        }
 
-        // check columns, if there is a winner get the value from a cell in the winning column and get the player from it
-        int col = checkColumns(game);
-        if (col > -1) return player.get(board[0][col]);
+        return checkGameState(playerBits, computerBits);
+    }
 
-        // check diagonals, if there is a winner get the value from the center cell and get the player from it
-        if (checkDiagonal(game)) return player.get(board[1][1]);
+    // checks the state of the game for the given bitboards without changing anything
+    public static GameState checkGameState(int playerBits, int computerBits) {
+        if (WINNING_LINE[playerBits] > -1) return GameState.PLAYER_WON;
+        if (WINNING_LINE[computerBits] > -1) return GameState.COMPUTER_WON;
 
-        // no winner, check for a draw. This method will either return Draw or Unfinished
-        return checkDraw(board, emptySpaces);
+        // no winner, if there are empty spaces the game is unfinished, otherwise it is a draw
+        return (playerBits | computerBits) == Bitboard.FULL ? GameState.DRAW : GameState.UNFINISHED;
     }
 
-    private static int checkRows(Game game) {
-        int[][] board = game.getBoard();
-        // for each row, if the first box is not 0, and all boxes match, then there is a win in that row, return the row number
-        for (int i = 0; i < 3; i++) {
-            if (board[i][0] != 0 && board[i][0] == board[i][1] && board[i][0] == board[i][2]) {
-                game.setWinningRowStart(coordToSpace(i, 0));
-                game.setWinningRowEnd(coordToSpace(i, 2));
-                return i;
-            }
-        }
-        return -1;
+    // returns true if one player's bitboard contains a complete line
+    public static boolean hasWon(int bits) {
+        return WINNING_LINE[bits] > -1;
     }
 
-    private static int checkColumns(Game game) {
-        int[][] board = game.getBoard();
-        // for each column, if the first top box is not 0, and all boxes match, then there is a win in that column, return the column number
-        for (int i = 0; i < 3; i++) {
-            if (board[0][i] != 0 && board[0][i] == board[1][i] && board[0][i] == board[2][i]) {
-                game.setWinningRowStart(coordToSpace(0, i));
-                game.setWinningRowEnd(coordToSpace(2, i));
-                return i;
-            }
-        }
-        return -1;
+    // returns the bits of the empty spaces that would complete a line for one player's bitboard
+    public static int completingSpaces(int bits, int emptyBits) {
+        return THREATS[bits] & emptyBits;
     }
 
-    private static boolean checkDiagonal(Game game) {
-        int[][] board = game.getBoard();
-        // if all three boxes are equal and one is not equal to 0, there is a winner, return true
-        if (board[0][0] != 0 && board[0][0] == board[1][1] && board[0][0] == board[2][2]) {
-            game.setWinningRowStart(1);
-            game.setWinningRowEnd(9);
-            return true; // top left to bottom right diag
-        }
-        if (board[0][2] != 0 && board[0][2] == board[1][1] && board[0][2] == board[2][0]) {
-            game.setWinningRowStart(7);
-            game.setWinningRowEnd(3);
-            return true; // top right to bottom left
-        }
-        return false;
+    // returns the index of the winning line in one player's bitboard, or -1 if there is no winning line
+    public static int winningLine(int bits) {
+        return WINNING_LINE[bits];
     }
 
-    private static GameState checkDraw(int[][] board, ArrayList<Integer> emptySpaces) {
-        // if there are empty spaces, game is unfinished
-        if (emptySpaces.size() > 0) return GameState.UNFINISHED;
-
-        // no empty spaces and a win was not caught above, game is a draw
-        return GameState.DRAW;
+    // returns the first space of a winning line returned by winningLine
+    public static int lineStart(int line) {
+        return LINE_START[line];
     }
 
-    private static int coordToSpace(int i, int j) {
-        return i * 3 + j + 1;
+    // returns the last space of a winning line returned by winningLine
+    public static int lineEnd(int line) {
+        return LINE_END[line];
     }
 
 }
@@ -0,0 +1,191 @@
+package com.bengodwin.game;
+
+import com.bengodwin.metrics.EngineMetrics;
+
+import java.util.Random;
+
+// strategy that runs a Monte Carlo tree search (UCT) within a budget of iterations and/or milliseconds
+//
+// each iteration walks down the tree picking the child with the best upper confidence bound, adds one new child,
+// plays a game out from it with Rollout.balancedPlayout and updates the results back up to the root.
+// The move played is the child of the root with the most visits.
+//
+// the tree is kept between moves, so when the next call is for a position already in the tree (for example after
+// the opponent replies to the last move) the search continues from that subtree. Because of this each game should
+// have its own instance
+public class MctsStrategy implements MoveStrategy {
+    private static final double EXPLORATION = Math.sqrt(2);
+    // how many iterations run between checks of the clock
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private int maxIterations;
+    private long maxMillis;
+    private volatile Node root;
+
+    // search with a budget of 20,000 iterations and no time limit
+    public MctsStrategy() {
+        this(20000, 0);
+    }
+
+    // maxIterations or maxMillis can be 0 to leave that budget unlimited, but not both
+    public MctsStrategy(int maxIterations, long maxMillis) {
+        if (maxIterations <= 0 && maxMillis <= 0) throw new IllegalArgumentException("MCTS needs an iteration or time budget");
+        this.maxIterations = maxIterations;
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public int selectMove(int ownBits, int opponentBits, Random random) {
+        Node node = findReusable(ownBits, opponentBits);
+        if (node == null) node = new Node(ownBits, opponentBits, null);
+        node.parent = null;
+        root = node;
+
+        Rollout rollout = Rollout.forCurrentThread();
+        rollout.setSeed(random.nextLong());
+
+        long start = System.nanoTime();
+        long deadline = maxMillis > 0 ? start + maxMillis * 1_000_000 : Long.MAX_VALUE;
+        int iterations = 0;
+        for (; maxIterations <= 0 || iterations < maxIterations; iterations++) {
+            // the first iteration always runs, so even a new root has a child to play however short the time budget
+            if (iterations > 0 && iterations % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) break;
+            iterate(node, rollout, random);
+        }
+        if (EngineMetrics.ENABLED) EngineMetrics.recordPlayouts(iterations, System.nanoTime() - start);
+
+        return bestMoveSoFar();
+    }
+
+    // returns the most visited move from the position currently being searched, or -1 if nothing has been searched
+    // this can be called from another thread while selectMove is running to get an answer before the budget is used up
+    public int bestMoveSoFar() {
+        Node current = root;
+        if (current == null) return -1;
+
+        int bestSpace = -1;
+        int bestVisits = -1;
+        for (int space = 1; space <= 9; space++) {
+            Node child = current.children[space];
+            if (child != null && child.visits > bestVisits) {
+                bestVisits = child.visits;
+                bestSpace = space;
+            }
+        }
+        return bestSpace;
+    }
+
+    // drops the tree, the next search starts from nothing
+    public void reset() {
+        root = null;
+    }
+
+    // looks for the position in the old tree, either as the root, a child or a grandchild of the root
+    private Node findReusable(int ownBits, int opponentBits) {
+        Node current = root;
+        if (current == null) return null;
+        if (current.matches(ownBits, opponentBits)) return current;
+
+        for (Node child : current.children) {
+            if (child == null) continue;
+            for (Node grandchild : child.children) {
+                if (grandchild != null && grandchild.matches(ownBits, opponentBits)) return grandchild;
+            }
+        }
+        return null;
+    }
+
+    // runs one selection, expansion, playout and update pass from the root
+    private void iterate(Node rootNode, Rollout rollout, Random random) {
+        // 1. select - follow the best child while every move from the node has been tried
+        Node node = rootNode;
+        while (node.result == Node.UNFINISHED && node.untried == 0) {
+            node = node.bestChild();
+        }
+
+        // 2. expand - add a random untried move as a new child
+        if (node.result == Node.UNFINISHED) {
+            int space = Bitboard.nthSpace(node.untried, random.nextInt(Integer.bitCount(node.untried)));
+            node.untried &= ~Bitboard.bit(space);
+            Node child = new Node(node.opponentBits, node.ownBits | Bitboard.bit(space), node);
+            node.children[space] = child;
+            node = child;
+        }
+
+        // 3. playout - the result is 1, 0 or -1 for the side to move at the new node
+        int result = node.result != Node.UNFINISHED ? node.result : rollout.balancedPlayout(node.ownBits, node.opponentBits);
+
+        // 4. update - each node scores the result for the side that moved into it, so flip the result every level
+        while (node != null) {
+            node.visits++;
+            node.score += (1 - result) / 2.0;
+            result = -result;
+            node = node.parent;
+        }
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    private static class Node {
+        // result value for a position that isn't finished, otherwise result is -1 or 0 for the side to move
+        static final int UNFINISHED = 2;
+
+        // tokens of the side to move at this node and of the side that just moved
+        final int ownBits;
+        final int opponentBits;
+        Node parent;
+        final Node[] children = new Node[10];
+        int untried;
+        final int result;
+
+        int visits;
+        // total score for the side that moved into this node, 1 for each win and 0.5 for each draw
+        double score;
+
+        Node(int ownBits, int opponentBits, Node parent) {
+            this.ownBits = ownBits;
+            this.opponentBits = opponentBits;
+            this.parent = parent;
+
+            int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+            if (GameStateLogic.hasWon(opponentBits)) result = -1;
+            else if (emptyBits == 0) result = 0;
+            else result = UNFINISHED;
+            this.untried = result == UNFINISHED ? emptyBits : 0;
+        }
+
+        boolean matches(int ownBits, int opponentBits) {
+            return this.ownBits == ownBits && this.opponentBits == opponentBits;
+        }
+
+        // returns the child with the highest upper confidence bound, every child must have been visited
+        Node bestChild() {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                if (child == null) continue;
+                double bound = child.score / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
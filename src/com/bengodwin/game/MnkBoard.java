@@ -0,0 +1,174 @@
+package com.bengodwin.game;
+
+// board for the m,n,k generalization of tic-tac-toe: rows x cols spaces where the first side to get k in a row
+// horizontally, vertically or diagonally wins. Tic-tac-toe is the 3,3,3 game, gomoku is 15,15,5
+//
+// cells are numbered from 0 across each row, so cell = row * cols + col. Side 1 moves first, then side 2.
+// Only the lines through the last move are checked for a win, so playing a move costs O(k) regardless of board size,
+// and moves can be undone so searches can reuse one board without copying it
+public class MnkBoard {
+    // row and column steps for horizontal, vertical and the two diagonal directions
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int rows;
+    private final int cols;
+    private final int k;
+
+    // 0 for an empty cell, otherwise the side (1 or 2) with a token there
+    private final byte[] cells;
+    // the first emptyCount entries are the empty cells, emptyIndex gives the position of each cell in that list
+    private final int[] empty;
+    private final int[] emptyIndex;
+    private int emptyCount;
+
+    private int toMove;
+    private int winner;
+
+    public MnkBoard(int rows, int cols, int k) {
+        if (rows < 1 || cols < 1 || k < 1 || (k > rows && k > cols)) {
+            throw new IllegalArgumentException("Invalid board " + rows + "," + cols + "," + k);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.k = k;
+        this.cells = new byte[rows * cols];
+        this.empty = new int[rows * cols];
+        this.emptyIndex = new int[rows * cols];
+        for (int cell = 0; cell < cells.length; cell++) {
+            empty[cell] = cell;
+            emptyIndex[cell] = cell;
+        }
+        this.emptyCount = cells.length;
+        this.toMove = 1;
+    }
+
+    // copies another board, the copy does not share any state with the original
+    public MnkBoard(MnkBoard other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.k = other.k;
+        this.cells = other.cells.clone();
+        this.empty = other.empty.clone();
+        this.emptyIndex = other.emptyIndex.clone();
+        this.emptyCount = other.emptyCount;
+        this.toMove = other.toMove;
+        this.winner = other.winner;
+    }
+
+    // places a token for the side to move and returns true if it completes a line
+    public boolean play(int cell) {
+        if (isFinished()) throw new IllegalStateException("The game is finished");
+        if (cells[cell] != 0) throw new IllegalArgumentException("Cell " + cell + " is not empty");
+
+        cells[cell] = (byte) toMove;
+
+        // swap the cell with the last empty cell and shrink the list
+        int position = emptyIndex[cell];
+        int last = empty[--emptyCount];
+        empty[position] = last;
+        emptyIndex[last] = position;
+        empty[emptyCount] = cell;
+        emptyIndex[cell] = emptyCount;
+
+        boolean won = makesLine(cell, toMove);
+        if (won) winner = toMove;
+        toMove = 3 - toMove;
+        return won;
+    }
+
+    // takes back the last move, which must have been played in cell
+    public void undo(int cell) {
+        // the cell is still at the end of the empty list from when it was played
+        emptyCount++;
+        cells[cell] = 0;
+        winner = 0;
+        toMove = 3 - toMove;
+    }
+
+    // returns true if a token for side in cell would complete a line, whether or not the cell is empty
+    // only the four lines through the cell are checked
+    public boolean makesLine(int cell, int side) {
+        int row = cell / cols;
+        int col = cell % cols;
+        for (int[] direction : DIRECTIONS) {
+            int count = 1 + countFrom(row, col, direction[0], direction[1], side)
+                    + countFrom(row, col, -direction[0], -direction[1], side);
+            if (count >= k) return true;
+        }
+        return false;
+    }
+
+    // counts the tokens for side in a row from (row, col), not including (row, col) itself, stopping at k - 1
+    private int countFrom(int row, int col, int rowStep, int colStep, int side) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (count < k - 1 && r >= 0 && r < rows && c >= 0 && c < cols && cells[r * cols + c] == side) {
+            count++;
+            r += rowStep;
+            c += colStep;
+        }
+        return count;
+    }
+
+    public boolean isFinished() {
+        return winner != 0 || emptyCount == 0;
+    }
+
+    // 1 or 2 for the side that has won, 0 if nobody has
+    public int getWinner() {
+        return winner;
+    }
+
+    // 1 or 2 for the side whose turn it is
+    public int getToMove() {
+        return toMove;
+    }
+
+    // 0 for an empty cell, otherwise the side with a token there
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    public int get(int row, int col) {
+        return cells[row * cols + col];
+    }
+
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    // returns one of the empty cells, index goes from 0 to getEmptyCount() - 1. The order changes as moves are played
+    public int getEmptyCell(int index) {
+        return empty[index];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                char symbol = Game.gameSymbols.get((int) cells[row * cols + col]);
+                sb.append(symbol == ' ' ? '.' : symbol);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package com.bengodwin.game;
+
+import java.util.Random;
+
+// Monte Carlo tree search (UCT) for any MnkBoard, the m,n,k counterpart of MctsStrategy
+//
+// the search plays moves on a single copy of the board and undoes them after each iteration, and playouts pick
+// random empty cells with the board's incremental win check, so an iteration only allocates the one node it adds
+public class MnkMctsSearch {
+    private static final double EXPLORATION = Math.sqrt(2);
+    // how many iterations run between checks of the clock
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private int maxIterations;
+    private long maxMillis;
+
+    // maxIterations or maxMillis can be 0 to leave that budget unlimited, but not both
+    public MnkMctsSearch(int maxIterations, long maxMillis) {
+        if (maxIterations <= 0 && maxMillis <= 0) throw new IllegalArgumentException("MCTS needs an iteration or time budget");
+        this.maxIterations = maxIterations;
+        this.maxMillis = maxMillis;
+    }
+
+    // returns the cell to play for the side to move, the board is not changed
+    public int selectMove(MnkBoard board, Random random) {
+        if (board.isFinished()) throw new IllegalStateException("The game is finished");
+
+        MnkBoard scratch = new MnkBoard(board);
+        int[] played = new int[board.getCellCount()];
+        Node root = new Node(scratch, null, -1);
+
+        long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1_000_000 : Long.MAX_VALUE;
+        for (int i = 0; maxIterations <= 0 || i < maxIterations; i++) {
+            if (i % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) break;
+            iterate(root, scratch, played, random);
+        }
+
+        Node best = null;
+        for (Node child = root.firstChild; child != null; child = child.nextSibling) {
+            if (best == null || child.visits > best.visits) best = child;
+        }
+        return best.cell;
+    }
+
+    // runs one selection, expansion, playout and update pass, leaving the board as it was
+    private void iterate(Node root, MnkBoard board, int[] played, Random random) {
+        int depth = 0;
+
+        // 1. select - follow the best child while every move from the node has been tried
+        Node node = root;
+        while (!board.isFinished() && node.untriedCount == 0) {
+            node = node.bestChild();
+            board.play(node.cell);
+            played[depth++] = node.cell;
+        }
+
+        // 2. expand - add a random untried move as a new child
+        if (!board.isFinished()) {
+            int index = random.nextInt(node.untriedCount);
+            int cell = node.untried[index];
+            node.untried[index] = node.untried[--node.untriedCount];
+            board.play(cell);
+            played[depth++] = cell;
+            node = node.addChild(board, cell);
+        }
+
+        // 3. playout - random moves until the game is finished, then undo every move played in this iteration
+        while (!board.isFinished()) {
+            int cell = board.getEmptyCell(random.nextInt(board.getEmptyCount()));
+            board.play(cell);
+            played[depth++] = cell;
+        }
+        int winner = board.getWinner();
+        while (depth > 0) {
+            board.undo(played[--depth]);
+        }
+
+        // 4. update - each node scores the result for the side that moved into it
+        for (; node != null; node = node.parent) {
+            node.visits++;
+            if (winner == 0) node.score += 0.5;
+            else if (winner == node.movedSide) node.score += 1;
+        }
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    private static class Node {
+        final Node parent;
+        // the cell played to reach this node and the side that played it
+        final int cell;
+        final int movedSide;
+        Node firstChild;
+        Node nextSibling;
+
+        // moves from this position that don't have a child yet, the first untriedCount entries are valid
+        final int[] untried;
+        int untriedCount;
+
+        int visits;
+        // total score for the side that moved into this node, 1 for each win and 0.5 for each draw
+        double score;
+
+        // board is the position at this node
+        Node(MnkBoard board, Node parent, int cell) {
+            this.parent = parent;
+            this.cell = cell;
+            this.movedSide = 3 - board.getToMove();
+            this.untriedCount = board.isFinished() ? 0 : board.getEmptyCount();
+            this.untried = new int[untriedCount];
+            for (int i = 0; i < untriedCount; i++) {
+                untried[i] = board.getEmptyCell(i);
+            }
+        }
+
+        Node addChild(MnkBoard board, int cell) {
+            Node child = new Node(board, this, cell);
+            child.nextSibling = firstChild;
+            firstChild = child;
+            return child;
+        }
+
+        // returns the child with the highest upper confidence bound, every move must have a child
+        Node bestChild() {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (Node child = firstChild; child != null; child = child.nextSibling) {
+                double bound = child.score / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.bengodwin.game;
+
+import com.bengodwin.metrics.EngineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// strategy for medium mode
+// 1. On the first move, use a set of opening replies to the opponent's first token
+// 2. Check if there is a winning move for the side to move, if so make that move
+// 3. Check if there is a winning move for the opponent, if so play in that space
+// 4. Simulate games for each empty space and pick the one that has the best results
+//
+// the simulations for each space are split into batches of BATCH_SIZE games that can run in parallel on a
+// ForkJoinPool. Every batch seeds its playouts from one number drawn from the move's generator, the space and the
+// batch number, so a seeded generator gives the same result no matter how many threads run the batches
+//
+// by default the sims are spent adaptively (see simulateAdaptive), numberOfSims is then the most a space gets,
+// moves that are clearly worse are dropped early and the search can be held to a time target with setTargetMillis.
+// With a time target the number of sims depends on the speed of the machine, so seeded results can differ.
+// setAdaptive(false) gives every candidate space exactly numberOfSims sims
+//
+// with a WeightCache, a position that has been searched before reuses the cached weights instead of searching again.
+// If the cache is accumulating each candidate also gets one more batch, until the cache holds numberOfSims sims for it
+public class MonteCarloStrategy implements MoveStrategy {
+    private static final int BATCH_SIZE = 250;
+    // width of the confidence interval on a candidate's average weight is CONFIDENCE / sqrt(sims), this is
+    // sqrt(2 ln(2 / 0.01)) so a candidate is wrongly called dominant less than 1% of the time
+    private static final double CONFIDENCE = Math.sqrt(2 * Math.log(2 / 0.01));
+
+    private static final ArrayList<Integer> corners = new ArrayList<>();
+    private static final ArrayList<Integer> middles = new ArrayList<>();
+    private static final int center = 5;
+
+    static {
+        int[] cornersArr = {1, 3, 7, 9};
+        for (int corner : cornersArr) {
+            corners.add(corner);
+        }
+
+        int[] middlesArr = {2, 4, 6, 8};
+        for (int middle : middlesArr) {
+            middles.add(middle);
+        }
+    }
+
+    private int numberOfSims;
+    private boolean adaptive = true;
+    private long targetMillis;
+    private WeightCache cache;
+    private int parallelism;
+
+    // pools for parallelism levels other than the common pool's, shared by every strategy so creating strategies
+    // for each game or request doesn't start new threads. Their workers are daemon threads
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    public MonteCarloStrategy() {
+        this(1000);
+    }
+
+    public MonteCarloStrategy(int numberOfSims) {
+        this.numberOfSims = numberOfSims;
+        this.parallelism = ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    @Override
+    public int selectMove(int ownBits, int opponentBits, Random random) {
+        // use the opening replies if the opponent has played exactly one token and we have not played yet
+        if (ownBits == 0 && Integer.bitCount(opponentBits) == 1) {
+            return selectFirst(Bitboard.lowestSpace(opponentBits), random);
+        }
+
+        // the side to move plays as the computer in the simulations
+        SimGame aGame = new SimGame(opponentBits, ownBits, Player.USER);
+
+        // look for a winning offensive move and defensive move to save an opponent win
+        int winningCpuMove = aGame.winningMove(Player.COMPUTER);
+        if (winningCpuMove > -1) return winningCpuMove;
+        int winningPlayerMove = aGame.winningMove(Player.USER);
+        if (winningPlayerMove > -1) return winningPlayerMove;
+
+        // 1. list the empty spaces to simulate, spaces that lead to a rotation or reflection of the same position
+        // share the results of the lowest such space, so only that one is simulated
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        int stabilizer = Symmetry.stabilizer(ownBits, opponentBits);
+        int[] candidates = new int[9];
+        int count = 0;
+        for (int remaining = emptyBits; remaining != 0; remaining &= remaining - 1) {
+            int space = Bitboard.lowestSpace(remaining);
+            if (Symmetry.representative(space, stabilizer) == space) candidates[count++] = space;
+        }
+
+        // 2. sim games for the candidates, adding the result of each to the weightArray index for that space
+        // if the sim is a win, the weight will increase by 1, loss will decrease by 1, draw will stay the same
+        // a cached position gets one more batch for each candidate when the cache is accumulating, otherwise none
+        long seed = random.nextLong();
+        int[] weightArray = new int[10];
+        int[] simArray = new int[10];
+        int key = cache != null ? Symmetry.canonicalKey(ownBits, opponentBits) : 0;
+        int transform = cache != null ? Symmetry.keyTransform(key) : 0;
+        int[] cachedWeights = new int[10];
+        int[] cachedSims = new int[10];
+        boolean cached = cache != null && cache.get(Symmetry.keyIndex(key), cachedWeights, cachedSims);
+        long start = System.nanoTime();
+        if (cached) {
+            if (cache.isAccumulating()) {
+                // carry on from the cached sims, so simulate stops adding to a space once it has had numberOfSims
+                // and the entry stops growing, then keep only the new sims
+                for (int i = 0; i < count; i++) {
+                    simArray[candidates[i]] = cachedSims[Symmetry.mapSpace(candidates[i], transform)];
+                }
+                simulate(ownBits, opponentBits, candidates, count, BATCH_SIZE, weightArray, simArray, seed);
+                for (int i = 0; i < count; i++) {
+                    simArray[candidates[i]] -= cachedSims[Symmetry.mapSpace(candidates[i], transform)];
+                }
+            }
+        } else if (adaptive) {
+            count = simulateAdaptive(ownBits, opponentBits, candidates, count, weightArray, simArray, seed, start);
+        } else {
+            simulate(ownBits, opponentBits, candidates, count, numberOfSims, weightArray, simArray, seed);
+        }
+        if (EngineMetrics.ENABLED) {
+            long playouts = 0;
+            for (int sims : simArray) playouts += sims;
+            EngineMetrics.recordPlayouts(playouts, System.nanoTime() - start);
+        }
+
+        if (cache != null) {
+            // the cache holds every empty space in the canonical orientation, so spaces share their representative's sims
+            int[] newWeights = new int[10];
+            int[] newSims = new int[10];
+            boolean simulated = false;
+            for (int remaining = emptyBits; remaining != 0; remaining &= remaining - 1) {
+                int space = Bitboard.lowestSpace(remaining);
+                int representative = Symmetry.representative(space, stabilizer);
+                newWeights[Symmetry.mapSpace(space, transform)] = weightArray[representative];
+                newSims[Symmetry.mapSpace(space, transform)] = simArray[representative];
+                if (simArray[representative] > 0) simulated = true;
+            }
+            if (simulated) cache.add(Symmetry.keyIndex(key), newWeights, newSims, numberOfSims);
+            if (cached) {
+                for (int i = 0; i < count; i++) {
+                    int space = candidates[i];
+                    weightArray[space] += cachedWeights[Symmetry.mapSpace(space, transform)];
+                    simArray[space] += cachedSims[Symmetry.mapSpace(space, transform)];
+                }
+            }
+        }
+
+        // 3. select the candidate with the highest average weight from those that had the most sims (the ones the
+        // adaptive search kept to the end), ties go to the lowest space number
+        int mostSims = 0;
+        for (int i = 0; i < count; i++) {
+            mostSims = Math.max(mostSims, simArray[candidates[i]]);
+        }
+        int selectedSpace = -1;
+        for (int i = 0; i < count; i++) {
+            int space = candidates[i];
+            if (simArray[space] < mostSims) continue;
+            if (selectedSpace == -1 || isBetter(space, selectedSpace, weightArray, simArray)) selectedSpace = space;
+        }
+
+        return selectedSpace;
+    }
+
+    // gives each candidate up to sims more simulations, never more than numberOfSims in total
+    private void simulate(int ownBits, int opponentBits, int[] candidates, int count, int sims, int[] weightArray, int[] simArray, long seed) {
+        List<PlayoutBatch> batches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int space = candidates[i];
+            int end = Math.min(simArray[space] + sims, numberOfSims);
+            // batches are numbered by where they start, so the seeds don't depend on how the sims were split into rounds
+            for (int start = simArray[space]; start < end; start += BATCH_SIZE) {
+                batches.add(new PlayoutBatch(ownBits, opponentBits, space, Math.min(BATCH_SIZE, end - start), batchSeed(seed, space, start / BATCH_SIZE)));
+            }
+        }
+
+        if (parallelism > 1 && batches.size() > 1) {
+            getPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(batches)));
+        } else {
+            for (PlayoutBatch batch : batches) {
+                batch.invoke();
+            }
+        }
+
+        for (PlayoutBatch batch : batches) {
+            weightArray[batch.space] += batch.join();
+            simArray[batch.space] += batch.sims;
+        }
+    }
+
+    // successive halving: every round gives the remaining candidates twice the sims of the round before, starting
+    // with one batch each, then drops the worse half. The search stops early when the leader is clearly ahead of
+    // every other candidate, when the candidates left have had numberOfSims sims or when the time target has passed
+    // returns how many candidates are left at the start of the candidates array, still in ascending order
+    private int simulateAdaptive(int ownBits, int opponentBits, int[] candidates, int count, int[] weightArray, int[] simArray, long seed, long start) {
+        long deadline = targetMillis > 0 ? start + targetMillis * 1_000_000 : Long.MAX_VALUE;
+        int roundSims = BATCH_SIZE;
+        while (count > 1) {
+            simulate(ownBits, opponentBits, candidates, count, roundSims, weightArray, simArray, seed);
+            if (simArray[candidates[0]] >= numberOfSims || System.nanoTime() > deadline) break;
+
+            int leader = candidates[0];
+            for (int i = 1; i < count; i++) {
+                if (isBetter(candidates[i], leader, weightArray, simArray)) leader = candidates[i];
+            }
+            if (isDominant(leader, candidates, count, weightArray, simArray)) {
+                candidates[0] = leader;
+                return 1;
+            }
+
+            // keep the better half, counting how many candidates rank above each one
+            int keep = (count + 1) / 2;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int rank = 0;
+                for (int j = 0; j < count; j++) {
+                    if (j != i && (isBetter(candidates[j], candidates[i], weightArray, simArray)
+                            || (j < i && !isBetter(candidates[i], candidates[j], weightArray, simArray)))) rank++;
+                }
+                if (rank < keep) candidates[kept++] = candidates[i];
+            }
+            count = kept;
+            roundSims *= 2;
+        }
+        return count;
+    }
+
+    // true if space has a higher average weight than other
+    private static boolean isBetter(int space, int other, int[] weightArray, int[] simArray) {
+        return (long) weightArray[space] * simArray[other] > (long) weightArray[other] * simArray[space];
+    }
+
+    // true if the lowest the leader's average could be is above the highest any other candidate's could be,
+    // using a Hoeffding bound on the average of sims that each score between -1 and 1
+    private static boolean isDominant(int leader, int[] candidates, int count, int[] weightArray, int[] simArray) {
+        double leaderLow = average(leader, weightArray, simArray) - CONFIDENCE / Math.sqrt(simArray[leader]);
+        for (int i = 0; i < count; i++) {
+            int space = candidates[i];
+            if (space == leader) continue;
+            if (average(space, weightArray, simArray) + CONFIDENCE / Math.sqrt(simArray[space]) >= leaderLow) return false;
+        }
+        return true;
+    }
+
+    private static double average(int space, int[] weightArray, int[] simArray) {
+        return (double) weightArray[space] / simArray[space];
+    }
+
+    // returns the seed for a batch of simulations
+    private static long batchSeed(long seed, int space, int batch) {
+        // mix the values with the SplitMix64 finalizer so nearby batches get unrelated seeds
+        long z = seed + space * 0x9E3779B97F4A7C15L + batch * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private ForkJoinPool getPool() {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism()) return ForkJoinPool.commonPool();
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    // simulates games after the side to move plays in space, the result is the sum of the simulation weights
+    private static class PlayoutBatch extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int ownBits;
+        private final int opponentBits;
+        private final int space;
+        private final int sims;
+        private final long seed;
+
+        PlayoutBatch(int ownBits, int opponentBits, int space, int sims, long seed) {
+            this.ownBits = ownBits;
+            this.opponentBits = opponentBits;
+            this.space = space;
+            this.sims = sims;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Integer compute() {
+            // the side to move plays as the computer, after it plays in space it is the user's turn
+            Rollout rollout = Rollout.forCurrentThread();
+            rollout.setSeed(seed);
+            int computerBits = ownBits | Bitboard.bit(space);
+            int weight = 0;
+            for (int j = 0; j < sims; j++) {
+                weight += rollout.playout(opponentBits, computerBits, false);
+            }
+            return weight;
+        }
+    }
+
+    // returns the opening reply to the opponent's first token
+    private int selectFirst(int lastSpace, Random random) {
+        int selectedSpace;
+
+        int userSpaceRow = (lastSpace - 1) / 3;
+        int userSpaceCol = (lastSpace - 1) % 3;
+
+        // if the user played in a corner, play in an any other outside space
+        if (corners.contains(lastSpace)) {
+            ArrayList<Integer> edgeOptions = new ArrayList<>();
+            for (int i = 1; i < 9; i++) if (i != lastSpace && i != center) edgeOptions.add(i);
+            selectedSpace = edgeOptions.get(random.nextInt(edgeOptions.size()));
+        } else if (middles.contains(lastSpace)) {
+            // if the user played in a middle outside space (not a corner or the middle space on the board),
+            // play in any other outside space that does not share a row or column with the user's space
+            ArrayList<Integer> rowOptions = new ArrayList<>();
+            ArrayList<Integer> colOptions = new ArrayList<>();
+            for (int i = 0; i < 3; i++) if (i != userSpaceRow) rowOptions.add(i);
+            for (int j = 0; j < 3; j++) if (j != userSpaceCol) colOptions.add(j);
+            selectedSpace = (rowOptions.get(random.nextInt(rowOptions.size())) * 3) + colOptions.get(random.nextInt(colOptions.size())) + 1;
+        } else {
+            // if the user played in the center space, play in any outside middle space
+            selectedSpace = middles.get(random.nextInt(middles.size()));
+        }
+
+        return selectedSpace;
+    }
+
+    public int getNumberOfSims() {
+        return numberOfSims;
+    }
+
+    public void setNumberOfSims(int numberOfSims) {
+        this.numberOfSims = numberOfSims;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public long getTargetMillis() {
+        return targetMillis;
+    }
+
+    // sets how long a move should take, the adaptive search stops after the first round that ends past it
+    // 0 means no target. Has no effect when the search is not adaptive
+    public void setTargetMillis(long targetMillis) {
+        this.targetMillis = targetMillis;
+    }
+
+    public WeightCache getCache() {
+        return cache;
+    }
+
+    // sets the cache of sim results to check before simulating and to add new results to, null for no cache
+    // strategies made by Game for MEDIUM use the shared cache when it is turned on, see WeightCache.shared
+    public void setCache(WeightCache cache) {
+        this.cache = cache;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // sets how many threads run the simulations, 1 runs them on the calling thread
+    // the common pool is used when parallelism matches its size, otherwise a pool of that size shared by every
+    // strategy with the same parallelism
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+}
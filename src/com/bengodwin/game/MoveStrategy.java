@@ -0,0 +1,19 @@
+package com.bengodwin.game;
+
+import java.util.Random;
+
+// an AI that picks the next move for whichever side is about to play
+public interface MoveStrategy {
+    // returns the space number (1 - 9) to play, ownBits are the tokens of the side to move and opponentBits
+    // are the tokens of the other side. The board must have at least one empty space
+    // all randomness in the strategy comes from random, so a seeded generator gives repeatable moves
+    int selectMove(int ownBits, int opponentBits, Random random);
+
+    // returns the space to play for the side to move in the snapshot
+    default int selectMove(GameSnapshot snapshot, Random random) {
+        if (snapshot.getSideToMove() == Player.COMPUTER) {
+            return selectMove(snapshot.getComputerBits(), snapshot.getPlayerBits(), random);
+        }
+        return selectMove(snapshot.getPlayerBits(), snapshot.getComputerBits(), random);
+    }
+}
@@ -0,0 +1,130 @@
+package com.bengodwin.game;
+
+import com.bengodwin.metrics.EngineMetrics;
+
+import java.util.Random;
+
+// strategy for impossible mode, searches the whole game tree with negamax and alpha-beta pruning
+// so the selected move is always one with the best possible result
+//
+// scores are from the point of view of the side to move: a win scores 1 plus the number of empty
+// spaces left when it happens (so faster wins score higher), a loss is the negative of that and a draw is 0
+//
+// results are cached in a TranspositionTable keyed by the canonical position, so rotations and reflections of a
+// position are only searched once and results are shared between every game using the same table
+public class NegamaxSolver implements MoveStrategy {
+    // order to try spaces in: center, corners, then middles. Wins and blocks are tried before these
+    private static final int[] MOVE_ORDER = {5, 1, 3, 7, 9, 2, 4, 6, 8};
+
+    private static final int INFINITY = 100;
+
+    private final TranspositionTable table;
+
+    public NegamaxSolver() {
+        this(TranspositionTable.shared());
+    }
+
+    public NegamaxSolver(TranspositionTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public int selectMove(int ownBits, int opponentBits, Random random) {
+        return bestMove(ownBits, opponentBits);
+    }
+
+    // returns the best space for the side to move, ties go to the space tried first
+    public int bestMove(int ownBits, int opponentBits) {
+        int[] moves = new int[9];
+        int count = orderMoves(ownBits, opponentBits, moves, -1);
+
+        int bestSpace = -1;
+        int alpha = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int space = moves[i];
+            int score = -negamax(opponentBits, ownBits | Bitboard.bit(space), -INFINITY, -alpha);
+            if (bestSpace == -1 || score > alpha) {
+                alpha = score;
+                bestSpace = space;
+            }
+        }
+        return bestSpace;
+    }
+
+    // returns the value of the position for the side to move with perfect play from both sides
+    public int solve(int ownBits, int opponentBits) {
+        return negamax(ownBits, opponentBits, -INFINITY, INFINITY);
+    }
+
+    private int negamax(int ownBits, int opponentBits, int alpha, int beta) {
+        if (EngineMetrics.ENABLED) EngineMetrics.recordNode();
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        // the opponent just moved, so only they can have won
+        if (GameStateLogic.hasWon(opponentBits)) return -(1 + Integer.bitCount(emptyBits));
+        if (emptyBits == 0) return 0;
+
+        // look up the canonical position, a stored score may end the search or narrow the window
+        int key = Symmetry.canonicalKey(ownBits, opponentBits);
+        int index = Symmetry.keyIndex(key);
+        int transform = Symmetry.keyTransform(key);
+        int originalAlpha = alpha;
+        int tableMove = -1;
+
+        int entry = table.probe(index);
+        if (EngineMetrics.ENABLED) EngineMetrics.recordTranspositionProbe(entry != 0);
+        if (entry != 0) {
+            int score = TranspositionTable.score(entry);
+            int flag = TranspositionTable.flag(entry);
+            if (flag == TranspositionTable.EXACT) return score;
+            if (flag == TranspositionTable.LOWER_BOUND && score > alpha) alpha = score;
+            if (flag == TranspositionTable.UPPER_BOUND && score < beta) beta = score;
+            if (alpha >= beta) return score;
+            // the stored move is in the canonical orientation, map it back to this position
+            tableMove = Symmetry.mapSpace(TranspositionTable.bestSpace(entry), Symmetry.inverse(transform));
+        }
+
+        int[] moves = new int[9];
+        int count = orderMoves(ownBits, opponentBits, moves, tableMove);
+
+        int best = -INFINITY;
+        int bestSpace = moves[0];
+        for (int i = 0; i < count; i++) {
+            int score = -negamax(opponentBits, ownBits | Bitboard.bit(moves[i]), -beta, -alpha);
+            if (score > best) {
+                best = score;
+                bestSpace = moves[i];
+            }
+            if (best > alpha) alpha = best;
+            if (alpha >= beta) break;
+        }
+
+        int flag = TranspositionTable.EXACT;
+        if (best <= originalAlpha) flag = TranspositionTable.UPPER_BOUND;
+        else if (best >= beta) flag = TranspositionTable.LOWER_BOUND;
+        table.store(index, flag, best, Symmetry.mapSpace(bestSpace, transform));
+
+        return best;
+    }
+
+    // fills moves with the empty spaces in search order: firstMove if it is a space, winning moves, blocking moves,
+    // then MOVE_ORDER. Returns the number of moves
+    static int orderMoves(int ownBits, int opponentBits, int[] moves, int firstMove) {
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        int wins = GameStateLogic.completingSpaces(ownBits, emptyBits);
+        int blocks = GameStateLogic.completingSpaces(opponentBits, emptyBits) & ~wins;
+        int rest = emptyBits & ~wins & ~blocks;
+
+        int count = 0;
+        if (firstMove > 0) {
+            moves[count++] = firstMove;
+            int firstBit = Bitboard.bit(firstMove);
+            wins &= ~firstBit;
+            blocks &= ~firstBit;
+            rest &= ~firstBit;
+        }
+        for (int space : MOVE_ORDER) if ((wins & Bitboard.bit(space)) != 0) moves[count++] = space;
+        for (int space : MOVE_ORDER) if ((blocks & Bitboard.bit(space)) != 0) moves[count++] = space;
+        for (int space : MOVE_ORDER) if ((rest & Bitboard.bit(space)) != 0) moves[count++] = space;
+        return count;
+    }
+}
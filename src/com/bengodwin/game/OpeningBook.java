@@ -0,0 +1,157 @@
+package com.bengodwin.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// book of moves for known positions, read from a file that is memory mapped so it is shared by every game and
+// thread without being copied onto the heap
+//
+// the file is a 16 byte header followed by one 2 byte record for every position index (see Bitboard.positionIndex),
+// only the records at canonical indexes (see Symmetry.canonicalKey) are used. A record is the best space in the
+// canonical orientation, 0 for a position that isn't in the book, and the score of the position for the side to
+// move (the negamax score for books from the position table, the average result times 100 for books built from
+// recorded games by JournalAnalyzer). The header holds the magic number, the format version, a mask of the modes the book is used in and the
+// number of records:
+//
+//   int magic ("TTTB")   short version   short mode mask (bit = Game.Mode ordinal)   int records   int reserved
+//
+// the book used by every game is the file named by -Dtictactoe.book, if there is one. New books can be written
+// from the position table with "OpeningBook <file> [max tokens] [modes]"
+public class OpeningBook {
+    private static final int MAGIC = 0x54545442;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 2;
+
+    private final MappedByteBuffer buffer;
+    private final int modeMask;
+
+    // the shared book is opened the first time shared is called, so games that never ask for it don't open the file
+    private static class Holder {
+        private static final OpeningBook INSTANCE = load(System.getProperty("tictactoe.book"));
+    }
+
+    // returns the book named by the tictactoe.book system property, or null if there isn't one or it can't be opened
+    public static OpeningBook shared() {
+        return Holder.INSTANCE;
+    }
+
+    private static OpeningBook load(String path) {
+        if (path == null) return null;
+        try {
+            return open(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("Could not open opening book " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private OpeningBook(MappedByteBuffer buffer, int modeMask) {
+        this.buffer = buffer;
+        this.modeMask = modeMask;
+    }
+
+    // maps the book file at path, the file can be closed straight away as the mapping stays valid
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + (long) Bitboard.POSITION_COUNT * RECORD_SIZE) {
+                throw new IOException("Opening book is too short");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) throw new IOException("Not an opening book");
+            if (buffer.getShort(4) != VERSION) throw new IOException("Unknown opening book version " + buffer.getShort(4));
+            if (buffer.getInt(8) != Bitboard.POSITION_COUNT) throw new IOException("Opening book is for a different board");
+            return new OpeningBook(buffer, buffer.getShort(6) & 0xFFFF);
+        }
+    }
+
+    // returns true if the book should be used for games in the mode
+    public boolean covers(Game.Mode mode) {
+        return (modeMask & 1 << mode.ordinal()) != 0;
+    }
+
+    // returns the book move for the side to move, or -1 if the position isn't in the book
+    // only absolute reads are used on the buffer, so any number of threads can look up moves at once
+    public int bestMove(int ownBits, int opponentBits) {
+        int key = Symmetry.canonicalKey(ownBits, opponentBits);
+        int space = buffer.get(HEADER_SIZE + Symmetry.keyIndex(key) * RECORD_SIZE);
+        if (space < 1 || space > 9) return -1;
+        // the stored move is in the canonical orientation, map it back to this position
+        space = Symmetry.mapSpace(space, Symmetry.inverse(Symmetry.keyTransform(key)));
+        return Bitboard.isEmpty(ownBits | opponentBits, space) ? space : -1;
+    }
+
+    // returns the score stored for the position for the side to move, only valid if bestMove returns a space
+    public int value(int ownBits, int opponentBits) {
+        int key = Symmetry.canonicalKey(ownBits, opponentBits);
+        return buffer.get(HEADER_SIZE + Symmetry.keyIndex(key) * RECORD_SIZE + 1);
+    }
+
+    // writes a book from the moves of the position table, holding every position with up to maxTokens tokens
+    // on the board, to be used in the modes set in modeMask
+    public static void write(Path path, int maxTokens, int modeMask) throws IOException {
+        PositionTable table = PositionTable.getInstance();
+        byte[] moves = new byte[Bitboard.POSITION_COUNT];
+        byte[] values = new byte[Bitboard.POSITION_COUNT];
+
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            // split the base 3 index back into the two bitboards
+            int ownBits = 0;
+            int opponentBits = 0;
+            for (int space = 1, rest = index; space <= 9; space++, rest /= 3) {
+                if (rest % 3 == 1) ownBits |= Bitboard.bit(space);
+                if (rest % 3 == 2) opponentBits |= Bitboard.bit(space);
+            }
+            if (Integer.bitCount(ownBits | opponentBits) > maxTokens) continue;
+
+            int key = Symmetry.canonicalKey(ownBits, opponentBits);
+            if (Symmetry.keyIndex(key) != index) continue;
+            int space = table.bestMove(ownBits, opponentBits);
+            if (space < 0) continue;
+            moves[index] = (byte) space;
+            values[index] = (byte) table.value(ownBits, opponentBits);
+        }
+
+        write(path, modeMask, moves, values);
+    }
+
+    // writes a book with the given move and score for each canonical position index, a move of 0 leaves the
+    // position out of the book
+    public static void write(Path path, int modeMask, byte[] moves, byte[] values) throws IOException {
+        ByteBuffer book = ByteBuffer.allocate(HEADER_SIZE + Bitboard.POSITION_COUNT * RECORD_SIZE);
+        book.putInt(MAGIC).putShort(VERSION).putShort((short) modeMask).putInt(Bitboard.POSITION_COUNT).putInt(0);
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            book.put(moves[index]).put(values[index]);
+        }
+
+        book.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (book.hasRemaining()) {
+                channel.write(book);
+            }
+        }
+    }
+
+    // writes a book, arguments are the file, the most tokens a position can have (9 by default) and a comma
+    // separated list of the modes to use it in (IMPOSSIBLE by default)
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: OpeningBook <file> [max tokens] [modes]");
+            return;
+        }
+        int maxTokens = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int modeMask = 0;
+        for (String mode : (args.length > 2 ? args[2] : "IMPOSSIBLE").split(",")) {
+            modeMask |= 1 << Game.Mode.valueOf(mode.trim().toUpperCase()).ordinal();
+        }
+        write(Paths.get(args[0]), maxTokens, modeMask);
+        System.out.println("Wrote opening book " + args[0]);
+    }
+}
@@ -0,0 +1,100 @@
+package com.bengodwin.game;
+
+import com.bengodwin.metrics.EngineMetrics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// strategy for impossible mode that looks up the best move in a table holding every reachable position
+//
+// the table is built once, the first time it is used, by searching the full game tree from the empty board.
+// Positions are indexed with Bitboard.positionIndex(ownBits, opponentBits), from the point of view of the
+// side to move, and store the best move and the negamax score of the position (see NegamaxSolver)
+public class PositionTable implements MoveStrategy {
+    // marks a position in the values table that has not been searched yet
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    private final byte[] moves;
+    private final byte[] values;
+    private int positionCount;
+    private final long buildNanos;
+    private final NegamaxSolver fallback = new NegamaxSolver();
+
+    // the shared table is built by the class loader the first time getInstance is called, so it is safe to
+    // use from any thread
+    private static class Holder {
+        private static final PositionTable INSTANCE = new PositionTable();
+    }
+
+    public static PositionTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private PositionTable() {
+        long start = System.nanoTime();
+        moves = new byte[Bitboard.POSITION_COUNT];
+        values = new byte[Bitboard.POSITION_COUNT];
+        Arrays.fill(values, UNKNOWN);
+        search(0, 0);
+        buildNanos = System.nanoTime() - start;
+    }
+
+    // returns the value of the position for the side to move, filling in the table for it and every
+    // position reachable from it
+    private int search(int ownBits, int opponentBits) {
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        // the opponent just moved, so only they can have won
+        if (GameStateLogic.hasWon(opponentBits)) return -(1 + Integer.bitCount(emptyBits));
+        if (emptyBits == 0) return 0;
+
+        int index = Bitboard.positionIndex(ownBits, opponentBits);
+        if (values[index] != UNKNOWN) return values[index];
+
+        int[] order = new int[9];
+        int count = NegamaxSolver.orderMoves(ownBits, opponentBits, order, -1);
+
+        int bestSpace = -1;
+        int best = 0;
+        for (int i = 0; i < count; i++) {
+            int score = -search(opponentBits, ownBits | Bitboard.bit(order[i]));
+            if (bestSpace == -1 || score > best) {
+                best = score;
+                bestSpace = order[i];
+            }
+        }
+
+        moves[index] = (byte) bestSpace;
+        values[index] = (byte) best;
+        positionCount++;
+        return best;
+    }
+
+    @Override
+    public int selectMove(int ownBits, int opponentBits, Random random) {
+        int space = bestMove(ownBits, opponentBits);
+        if (EngineMetrics.ENABLED) EngineMetrics.recordPositionTableLookup(space > 0);
+        // positions that can't be reached by alternating moves from an empty board aren't in the table
+        return space > 0 ? space : fallback.bestMove(ownBits, opponentBits);
+    }
+
+    // returns the best space for the side to move, or -1 if the position is finished or not in the table
+    public int bestMove(int ownBits, int opponentBits) {
+        int space = moves[Bitboard.positionIndex(ownBits, opponentBits)];
+        return space > 0 ? space : -1;
+    }
+
+    // returns the score of the position for the side to move, only valid if bestMove returns a space
+    public int value(int ownBits, int opponentBits) {
+        return values[Bitboard.positionIndex(ownBits, opponentBits)];
+    }
+
+    // number of unfinished positions stored in the table
+    public int getPositionCount() {
+        return positionCount;
+    }
+
+    // how long it took to build the table, so the startup cost can be reported
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+}
@@ -0,0 +1,13 @@
+package com.bengodwin.game;
+
+import java.util.Random;
+
+// strategy for easy mode, picks a random empty space
+public class RandomStrategy implements MoveStrategy {
+
+    @Override
+    public int selectMove(int ownBits, int opponentBits, Random random) {
+        int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+        return Bitboard.nthSpace(emptyBits, random.nextInt(Integer.bitCount(emptyBits)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.bengodwin.game;
+
+// iterative playout kernel used by the Monte Carlo strategies, plays a game to the end on two bitboards
+// without allocating anything
+//
+// moves follow the same rules as SimGame has always used:
+// - the computer plays a winning space if it has one, otherwise blocks a winning space for the user,
+//   otherwise plays a random empty space
+// - the user plays a winning space if it has one, otherwise a random empty space
+//
+// random numbers come from a SplitMix64 generator kept in the instance, so each thread should use its own
+// instance from forCurrentThread()
+public class Rollout {
+    private static final ThreadLocal<Rollout> INSTANCES = ThreadLocal.withInitial(Rollout::new);
+
+    private long state;
+
+    // returns the rollout instance for the calling thread
+    public static Rollout forCurrentThread() {
+        return INSTANCES.get();
+    }
+
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    // plays the game out from the given position and returns 1 if the computer wins, -1 if the user wins
+    // and 0 for a draw
+    public int playout(int userBits, int computerBits, boolean computerToMove) {
+        while (true) {
+            if (GameStateLogic.hasWon(computerBits)) return 1;
+            if (GameStateLogic.hasWon(userBits)) return -1;
+            int emptyBits = Bitboard.emptyBits(userBits | computerBits);
+            if (emptyBits == 0) return 0;
+
+            int userWins = GameStateLogic.completingSpaces(userBits, emptyBits);
+            int candidates;
+            if (computerToMove) {
+                int computerWins = GameStateLogic.completingSpaces(computerBits, emptyBits);
+                candidates = computerWins != 0 ? computerWins : userWins;
+            } else {
+                candidates = userWins;
+            }
+            int space = candidates != 0 ? Bitboard.lowestSpace(candidates) : Bitboard.nthSpace(emptyBits, nextInt(Integer.bitCount(emptyBits)));
+
+            if (computerToMove) computerBits |= Bitboard.bit(space);
+            else userBits |= Bitboard.bit(space);
+            computerToMove = !computerToMove;
+        }
+    }
+
+    // plays the game out from the given position with both sides playing a winning space if they have one, otherwise
+    // blocking the other side's winning space, otherwise a random empty space
+    // returns 1 if the side to move wins, -1 if the opponent wins and 0 for a draw
+    public int balancedPlayout(int ownBits, int opponentBits) {
+        int sign = 1;
+        while (true) {
+            // the opponent just moved, so only they can have won
+            if (GameStateLogic.hasWon(opponentBits)) return -sign;
+            int emptyBits = Bitboard.emptyBits(ownBits | opponentBits);
+            if (emptyBits == 0) return 0;
+
+            int candidates = GameStateLogic.completingSpaces(ownBits, emptyBits);
+            if (candidates == 0) candidates = GameStateLogic.completingSpaces(opponentBits, emptyBits);
+            int space = candidates != 0 ? Bitboard.lowestSpace(candidates) : Bitboard.nthSpace(emptyBits, nextInt(Integer.bitCount(emptyBits)));
+
+            // swap sides so ownBits is always the side to move
+            int moved = ownBits | Bitboard.bit(space);
+            ownBits = opponentBits;
+            opponentBits = moved;
+            sign = -sign;
+        }
+    }
+
+    // returns a random number from 0 (inclusive) to bound (exclusive)
+    private int nextInt(int bound) {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+}
@@ -0,0 +1,111 @@
+package com.bengodwin.game;
+
+// the eight rotations and reflections of the board, used to treat positions that are mirror images or
+// rotations of each other as the same position
+//
+// transforms are numbered 0 - 7, transform 0 is the identity
+public class Symmetry {
+    public static final int COUNT = 8;
+
+    // SPACE_MAP[t][space] is the space that space moves to under transform t (index 0 is unused)
+    private static final int[][] SPACE_MAP = new int[COUNT][10];
+    // INVERSE[t] is the transform that undoes transform t
+    private static final int[] INVERSE = new int[COUNT];
+    // BITS[t][bits] is the bitboard bits moved by transform t
+    private static final short[][] BITS = new short[COUNT][Bitboard.FULL + 1];
+
+    static {
+        for (int t = 0; t < COUNT; t++) {
+            for (int space = 1; space <= 9; space++) {
+                int row = (space - 1) / 3;
+                int col = (space - 1) % 3;
+                // reflect across the main diagonal first for transforms 4 - 7, then rotate a quarter turn t times
+                if (t >= 4) {
+                    int swap = row;
+                    row = col;
+                    col = swap;
+                }
+                for (int turn = 0; turn < t % 4; turn++) {
+                    int newRow = col;
+                    col = 2 - row;
+                    row = newRow;
+                }
+                SPACE_MAP[t][space] = row * 3 + col + 1;
+            }
+        }
+
+        for (int t = 0; t < COUNT; t++) {
+            for (int u = 0; u < COUNT; u++) {
+                boolean undoes = true;
+                for (int space = 1; space <= 9; space++) {
+                    if (SPACE_MAP[u][SPACE_MAP[t][space]] != space) undoes = false;
+                }
+                if (undoes) INVERSE[t] = u;
+            }
+
+            for (int bits = 1; bits <= Bitboard.FULL; bits++) {
+                int lowest = Bitboard.lowestSpace(bits);
+                BITS[t][bits] = (short) (BITS[t][bits & (bits - 1)] | Bitboard.bit(SPACE_MAP[t][lowest]));
+            }
+        }
+    }
+
+    // returns the bitboard moved by the transform
+    public static int transform(int bits, int t) {
+        return BITS[t][bits];
+    }
+
+    // returns the space that the given space moves to under the transform
+    public static int mapSpace(int space, int t) {
+        return SPACE_MAP[t][space];
+    }
+
+    // returns the transform that undoes the given transform
+    public static int inverse(int t) {
+        return INVERSE[t];
+    }
+
+    // returns a key for the canonical form of the position, the transform with the lowest position index
+    // the key packs the canonical position index with the transform that produces it, see keyIndex and keyTransform
+    public static int canonicalKey(int firstBits, int secondBits) {
+        int bestIndex = Bitboard.positionIndex(firstBits, secondBits);
+        int bestTransform = 0;
+        for (int t = 1; t < COUNT; t++) {
+            int index = Bitboard.positionIndex(BITS[t][firstBits], BITS[t][secondBits]);
+            if (index < bestIndex) {
+                bestIndex = index;
+                bestTransform = t;
+            }
+        }
+        return bestIndex * COUNT + bestTransform;
+    }
+
+    // the position index (see Bitboard.positionIndex) of the canonical form in a key from canonicalKey
+    public static int keyIndex(int key) {
+        return key / COUNT;
+    }
+
+    // the transform that turns the original position into the canonical form in a key from canonicalKey
+    public static int keyTransform(int key) {
+        return key % COUNT;
+    }
+
+    // returns a mask with bit t set for every transform that leaves the position unchanged
+    public static int stabilizer(int firstBits, int secondBits) {
+        int mask = 0;
+        for (int t = 0; t < COUNT; t++) {
+            if (BITS[t][firstBits] == firstBits && BITS[t][secondBits] == secondBits) mask |= 1 << t;
+        }
+        return mask;
+    }
+
+    // returns the lowest space that the given space can be moved to by a transform in the stabilizer mask
+    // moves to spaces with the same representative lead to the same position after a transform
+    public static int representative(int space, int stabilizer) {
+        int lowest = space;
+        for (int t = 1; t < COUNT; t++) {
+            if ((stabilizer & (1 << t)) != 0 && SPACE_MAP[t][space] < lowest) lowest = SPACE_MAP[t][space];
+        }
+        return lowest;
+    }
+}
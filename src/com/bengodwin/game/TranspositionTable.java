@@ -0,0 +1,54 @@
+package com.bengodwin.game;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// cache of search results keyed by the canonical form of a position (see Symmetry), so a position and all its
+// rotations and reflections share one entry
+//
+// each entry is a single int holding the score, whether the score is exact or a bound, and the best move in the
+// canonical orientation. Entries are read and written atomically so one table can be shared between threads
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final TranspositionTable SHARED = new TranspositionTable();
+
+    private final AtomicIntegerArray entries = new AtomicIntegerArray(Bitboard.POSITION_COUNT);
+
+    // table shared by every search that doesn't ask for its own
+    public static TranspositionTable shared() {
+        return SHARED;
+    }
+
+    // returns the entry stored for the canonical position index, or 0 if there is none
+    public int probe(int index) {
+        return entries.get(index);
+    }
+
+    // stores a result for the canonical position index, bestSpace is in the canonical orientation
+    public void store(int index, int flag, int score, int bestSpace) {
+        entries.set(index, flag << 16 | (bestSpace & 0xF) << 8 | (score & 0xFF));
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, 0);
+        }
+    }
+
+    // the EXACT, LOWER_BOUND or UPPER_BOUND flag of a non-zero entry
+    public static int flag(int entry) {
+        return entry >>> 16;
+    }
+
+    // the score of a non-zero entry
+    public static int score(int entry) {
+        return (byte) entry;
+    }
+
+    // the best space of a non-zero entry in the canonical orientation
+    public static int bestSpace(int entry) {
+        return (entry >>> 8) & 0xF;
+    }
+}
@@ -0,0 +1,287 @@
+package com.bengodwin.game;
+
+import com.bengodwin.metrics.EngineMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// bounded cache of Monte Carlo results, the total weight and number of sims for each space, keyed by position
+//
+// keys are canonical position indexes (see Symmetry.canonicalKey) and the arrays are indexed by space in the
+// canonical orientation, so every rotation and reflection of a position shares one entry. Entries are kept in
+// open addressing hash tables of primitive arrays split across lock stripes like SessionRegistry. Each stripe holds
+// at most its share of the capacity, when it is full an entry is evicted with the CLOCK algorithm: entries that
+// have been read since the hand last passed get another chance, the first one that hasn't is removed.
+// Entries that haven't been written for maxAgeMillis count as misses and are removed when they are found.
+//
+// with accumulating set, MonteCarloStrategy keeps adding new sims to the entries it reads so their estimates get
+// better over time, otherwise a hit is used as it is. MEDIUM games only share a cache when it is turned on with
+// tictactoe.weightCache.size (entries, 0 by default for no cache), since cached results make a seeded game depend on
+// the games played before it. It is configured further with tictactoe.weightCache.maxAgeSeconds and
+// tictactoe.weightCache.accumulate
+public class WeightCache {
+    private static final int STRIPE_COUNT = 16;
+    // key 0 marks an empty slot, so positions are stored as their index plus 1
+    private static final int EMPTY = 0;
+    // total weight for spaces 1 - 9 followed by the number of sims for spaces 1 - 9
+    private static final int STATS = 18;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final long maxAgeMillis;
+    private final boolean accumulating;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Holder {
+        private static final WeightCache INSTANCE = create();
+
+        private static WeightCache create() {
+            int size = Integer.getInteger("tictactoe.weightCache.size", 0);
+            if (size <= 0) return null;
+            long maxAgeSeconds = Long.getLong("tictactoe.weightCache.maxAgeSeconds", 3600);
+            String accumulate = System.getProperty("tictactoe.weightCache.accumulate", "true");
+            return new WeightCache(size, maxAgeSeconds * 1000, Boolean.parseBoolean(accumulate));
+        }
+    }
+
+    // returns the cache shared by MEDIUM games, or null if it hasn't been turned on
+    public static WeightCache shared() {
+        return Holder.INSTANCE;
+    }
+
+    // capacity is the most entries the cache holds, maxAgeMillis 0 keeps entries until they are evicted for space
+    public WeightCache(int capacity, long maxAgeMillis, boolean accumulating) {
+        int perStripe = Math.max(1, (capacity + STRIPE_COUNT - 1) / STRIPE_COUNT);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.maxAgeMillis = maxAgeMillis;
+        this.accumulating = accumulating;
+    }
+
+    // copies the cached weights and sims for the canonical position index into the arrays, indexed by canonical
+    // space, and returns true, or returns false if the position isn't cached
+    public boolean get(int position, int[] weightArray, int[] simArray) {
+        Stripe stripe = stripeFor(position);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.find(position + 1);
+            if (slot >= 0 && isExpired(stripe.written[slot])) {
+                stripe.delete(slot);
+                evictions.increment();
+                if (EngineMetrics.ENABLED) EngineMetrics.recordWeightCacheEviction();
+                slot = -1;
+            }
+            if (slot < 0) {
+                misses.increment();
+                if (EngineMetrics.ENABLED) EngineMetrics.recordWeightCacheLookup(false);
+                return false;
+            }
+            stripe.referenced[slot] = true;
+            int base = slot * STATS;
+            for (int space = 1; space <= 9; space++) {
+                weightArray[space] = stripe.stats[base + space - 1];
+                simArray[space] = stripe.stats[base + 9 + space - 1];
+            }
+            hits.increment();
+            if (EngineMetrics.ENABLED) EngineMetrics.recordWeightCacheLookup(true);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // adds weights and sims, indexed by canonical space, to the entry for the canonical position index, adding
+    // the entry if there isn't one. A space's sims are only added if that leaves it with at most maxSims, so threads
+    // that searched the same position at the same time can't push it past maxSims. Returns true if anything was added.
+    // Adding counts as a write for the max age, a full entry isn't written again so it still expires
+    public boolean add(int position, int[] weightArray, int[] simArray, int maxSims) {
+        Stripe stripe = stripeFor(position);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.find(position + 1);
+            if (slot >= 0 && isExpired(stripe.written[slot])) {
+                stripe.delete(slot);
+                evictions.increment();
+                if (EngineMetrics.ENABLED) EngineMetrics.recordWeightCacheEviction();
+                slot = -1;
+            }
+            boolean inserted = slot < 0;
+            if (inserted) {
+                if (stripe.size == stripe.capacity) {
+                    stripe.evict();
+                    evictions.increment();
+                    if (EngineMetrics.ENABLED) EngineMetrics.recordWeightCacheEviction();
+                }
+                slot = stripe.insert(position + 1);
+            }
+            int base = slot * STATS;
+            boolean added = false;
+            for (int space = 1; space <= 9; space++) {
+                if (simArray[space] == 0 || stripe.stats[base + 9 + space - 1] + simArray[space] > maxSims) continue;
+                stripe.stats[base + space - 1] += weightArray[space];
+                stripe.stats[base + 9 + space - 1] += simArray[space];
+                added = true;
+            }
+            if (added) stripe.written[slot] = now();
+            else if (inserted) stripe.delete(slot);
+            return added;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public boolean isAccumulating() {
+        return accumulating;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // entries removed to make space or because they were too old
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private boolean isExpired(long written) {
+        return maxAgeMillis > 0 && now() - written > maxAgeMillis;
+    }
+
+    // milliseconds since the cache was created
+    private long now() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private Stripe stripeFor(int position) {
+        return stripes[mix(position) & (STRIPE_COUNT - 1)];
+    }
+
+    // spreads nearby position indexes over stripes and slots
+    private static int mix(int key) {
+        int z = key * 0x9E3779B9;
+        return z ^ (z >>> 16);
+    }
+
+    // one lock and a linear probing hash table at most half full, with the stats, write times and CLOCK bits
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final int capacity;
+        final int[] keys;
+        final int[] stats;
+        final long[] written;
+        final boolean[] referenced;
+        int size;
+        // the slot the CLOCK hand points at
+        int hand;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            int length = Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+            keys = new int[length];
+            stats = new int[length * STATS];
+            written = new long[length];
+            referenced = new boolean[length];
+        }
+
+        // returns the slot holding key, or -1
+        int find(int key) {
+            int mask = keys.length - 1;
+            for (int slot = home(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return slot;
+            }
+            return -1;
+        }
+
+        // puts key in a free slot with empty stats and returns the slot, the key must not be in the table
+        int insert(int key) {
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            referenced[slot] = false;
+            Arrays.fill(stats, slot * STATS, slot * STATS + STATS, 0);
+            size++;
+            return slot;
+        }
+
+        // moves the hand round the table clearing referenced bits until it finds an entry without one, and removes it
+        void evict() {
+            int mask = keys.length - 1;
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (keys[slot] == EMPTY) continue;
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                } else {
+                    delete(slot);
+                    return;
+                }
+            }
+        }
+
+        // empties the slot and shifts back any later entries in the same run so lookups still find them
+        void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = home(keys[next], mask);
+                // the entry can fill the gap if its home slot is not between the gap and its current slot
+                boolean canMove = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+                if (canMove) {
+                    keys[gap] = keys[next];
+                    System.arraycopy(stats, next * STATS, stats, gap * STATS, STATS);
+                    written[gap] = written[next];
+                    referenced[gap] = referenced[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = EMPTY;
+            size--;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            hand = 0;
+        }
+
+        private static int home(int key, int mask) {
+            return (mix(key) >>> 8) & mask;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.bengodwin.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// append only file of GameRecords, 6 bytes each with no header, so record n always starts at byte 6 * n
+//
+// appends go into an in-memory buffer and only reach the file when the buffer fills up, when commit is called
+// or when the journal is closed. commit writes and forces everything appended so far, by any thread, in one go:
+// threads that call commit while another thread's commit is running wait for it and then return straight away if
+// it already covered their records (group commit), so many writers share each disk flush.
+// A crash can leave a partial record at the end of the file. JournalReader ignores it, and opening the journal again
+// cuts it off so the records appended after it still start at multiples of 6
+public class GameJournal implements Closeable {
+    // a multiple of the record size so records are never split between two writes
+    private static final int BUFFER_RECORDS = 8192;
+
+    private final FileChannel channel;
+    // records are appended to filling while writing is being written to the file, then the two are swapped
+    private ByteBuffer filling = ByteBuffer.allocateDirect(BUFFER_RECORDS * GameRecord.SIZE);
+    private ByteBuffer writing = ByteBuffer.allocateDirect(BUFFER_RECORDS * GameRecord.SIZE);
+    // guards filling and appended, held only while copying a record in or swapping the buffers
+    private final Object appendLock = new Object();
+    // guards the channel and writing, held while writing to the file
+    private final Object writeLock = new Object();
+    private long appended;
+    private long committed;
+    private boolean closed;
+
+    // opens the journal at path for appending, creating it if it doesn't exist
+    public GameJournal(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            // drop a partial record left by a crash
+            long size = channel.size();
+            if (size % GameRecord.SIZE != 0) channel.truncate(size - size % GameRecord.SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // adds a record to the journal, it is only safely on disk once commit has been called
+    public void append(GameRecord record) throws IOException {
+        while (true) {
+            synchronized (appendLock) {
+                if (closed) throw new IOException("Journal is closed");
+                if (filling.remaining() >= GameRecord.SIZE) {
+                    record.write(filling);
+                    appended++;
+                    return;
+                }
+            }
+            // the buffer is full, write it out without forcing and try again
+            flush(false);
+        }
+    }
+
+    // writes every record appended before this call to the file and forces it to the disk
+    public void commit() throws IOException {
+        long target;
+        synchronized (appendLock) {
+            target = appended;
+        }
+        synchronized (writeLock) {
+            // another thread's commit may have covered these records while this one was waiting
+            if (committed >= target) return;
+            flush(true);
+        }
+    }
+
+    // number of records appended since the journal was opened
+    public long getAppendedCount() {
+        synchronized (appendLock) {
+            return appended;
+        }
+    }
+
+    private void flush(boolean force) throws IOException {
+        synchronized (writeLock) {
+            long target;
+            synchronized (appendLock) {
+                ByteBuffer full = filling;
+                filling = writing;
+                writing = full;
+                target = appended;
+            }
+            writing.flip();
+            while (writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            writing.clear();
+            if (force) {
+                channel.force(false);
+                committed = target;
+            }
+        }
+    }
+
+    // commits everything appended and closes the file, later appends throw an IOException
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (!channel.isOpen()) return;
+            synchronized (appendLock) {
+                closed = true;
+            }
+            flush(true);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.bengodwin.journal;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.GameSnapshot;
+import com.bengodwin.game.GameState;
+import com.bengodwin.game.Player;
+
+import java.nio.ByteBuffer;
+
+// a finished game packed into the 6 bytes it takes up in a GameJournal
+//
+// the 48 bits are, from the lowest: 2 bits mode, 1 bit set when the computer (or O in two player mode) moved
+// first, 2 bits result (the GameState ordinal), 4 bits move count and then 4 bits for each space played in order.
+// Nine moves need 45 bits, so the top 3 bits are always 0
+public final class GameRecord {
+    public static final int SIZE = 6;
+
+    private static final GameState[] RESULTS = GameState.values();
+    private static final Game.Mode[] MODES = Game.Mode.values();
+
+    private final long bits;
+
+    private GameRecord(long bits) {
+        this.bits = bits;
+    }
+
+    // creates a record of the moves played in the game so far and its current state
+    public static GameRecord of(Game game) {
+        int count = game.getMoveCount();
+        // the sides alternate, so the first player made the last move when the count is odd
+        boolean computerFirst = count > 0 && (game.getLastPlayed() == Player.COMPUTER) == (count % 2 == 1);
+        long bits = game.getMode().ordinal()
+                | (computerFirst ? 1L : 0L) << 2
+                | (long) game.getGameState().ordinal() << 3
+                | (long) count << 5;
+        for (int i = 0; i < count; i++) {
+            bits |= (long) game.getMove(i) << (9 + 4 * i);
+        }
+        return new GameRecord(bits);
+    }
+
+    // creates a record from the 48 bit value returned by getBits
+    public static GameRecord fromBits(long bits) {
+        int count = (int) (bits >>> 5) & 0xF;
+        if ((bits >>> 48) != 0 || count > 9 || (bits & 3) >= MODES.length) {
+            throw new IllegalArgumentException("Not a game record: " + Long.toHexString(bits));
+        }
+        return new GameRecord(bits);
+    }
+
+    // reads a record from the next 6 bytes of the buffer
+    public static GameRecord read(ByteBuffer buffer) {
+        long bits = (buffer.getShort() & 0xFFFFL) << 32 | (buffer.getInt() & 0xFFFFFFFFL);
+        return fromBits(bits);
+    }
+
+    // writes the record to the next 6 bytes of the buffer
+    public void write(ByteBuffer buffer) {
+        buffer.putShort((short) (bits >>> 32));
+        buffer.putInt((int) bits);
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    public Game.Mode getMode() {
+        return MODES[(int) bits & 3];
+    }
+
+    public Player getFirstPlayer() {
+        return (bits >>> 2 & 1) == 1 ? Player.COMPUTER : Player.USER;
+    }
+
+    public GameState getResult() {
+        return RESULTS[(int) (bits >>> 3) & 3];
+    }
+
+    public int getMoveCount() {
+        return (int) (bits >>> 5) & 0xF;
+    }
+
+    // returns the space played by the given move, counting from 0 for the first move of the game
+    public int getMove(int index) {
+        if (index < 0 || index >= getMoveCount()) throw new IndexOutOfBoundsException("Move " + index + " of " + getMoveCount());
+        return (int) (bits >>> (9 + 4 * index)) & 0xF;
+    }
+
+    // replays the moves and returns the position after the given number of them
+    public GameSnapshot snapshotAfter(int moveCount) {
+        Game start = new Game();
+        start.setMode(getMode());
+        start.setLastPlayed(getFirstPlayer() == Player.USER ? Player.COMPUTER : Player.USER);
+        GameSnapshot snapshot = start.snapshot();
+        for (int i = 0; i < moveCount; i++) {
+            snapshot = snapshot.withMove(getMove(i));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GameRecord && ((GameRecord) o).bits == bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append(getMode()).append(' ').append(getResult()).append(" [");
+        for (int i = 0; i < getMoveCount(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(getMove(i));
+        }
+        return sb.append(']').toString();
+    }
+}
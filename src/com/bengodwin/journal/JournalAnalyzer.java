@@ -0,0 +1,302 @@
+package com.bengodwin.journal;
+
+import com.bengodwin.game.Bitboard;
+import com.bengodwin.game.Game;
+import com.bengodwin.game.GameState;
+import com.bengodwin.game.OpeningBook;
+import com.bengodwin.game.Player;
+import com.bengodwin.game.Symmetry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+// statistics over every game in a journal: results by mode and opening move, the positions where the computer
+// loses most often and how every move from every position turned out, which can be written out as an opening book
+//
+// the journal is split into one range of records per core, each range is streamed by its own JournalReader into
+// its own counters and the counters are added together at the end, so the whole journal is never in memory.
+// Positions and moves are counted from the point of view of the side to move by their plain position index, which is
+// cheap to work out for every move, and are only folded into their canonical form (see Symmetry) when read
+//
+// usage: JournalAnalyzer <journal> [mode or ALL] [book file] [min games]
+// with a book file, the move with the best average result from each position played at least min games times
+// (100 by default) in the chosen mode is written as an opening book for that mode only. A book needs a mode, since
+// Game plays book moves before asking the strategy and a book for every mode would replace EASY's random moves and
+// IMPOSSIBLE's perfect ones
+public class JournalAnalyzer {
+    private static final Game.Mode[] MODES = Game.Mode.values();
+    private static final int RESULTS = GameState.values().length;
+    // how many of the worst positions to print
+    private static final int TOP_POSITIONS = 10;
+
+    // games in the mode (or all modes when null) are counted by position and move
+    private final Game.Mode positionMode;
+
+    // [mode][result] and [mode][first space][result]
+    private final long[][] results = new long[MODES.length][RESULTS];
+    private final long[][][] openings = new long[MODES.length][10][RESULTS];
+    // [position index], for games where the computer was the side to move in the position
+    private final long[] computerGames = new long[Bitboard.POSITION_COUNT];
+    private final long[] computerLosses = new long[Bitboard.POSITION_COUNT];
+    // [position index * 9 + space - 1], for whichever side moved
+    private final long[] moveGames = new long[Bitboard.POSITION_COUNT * 9];
+    // wins minus losses for the side that moved
+    private final long[] moveScore = new long[Bitboard.POSITION_COUNT * 9];
+
+    public JournalAnalyzer(Game.Mode positionMode) {
+        this.positionMode = positionMode;
+    }
+
+    // scans the whole journal on every core and returns the combined statistics
+    public static JournalAnalyzer analyze(Path journal, Game.Mode positionMode) throws IOException {
+        long records = JournalReader.recordCount(journal);
+        int parts = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), records / 65536));
+        try {
+            return IntStream.range(0, parts).parallel()
+                    .mapToObj(part -> {
+                        long first = records * part / parts;
+                        long last = records * (part + 1) / parts;
+                        JournalAnalyzer analyzer = new JournalAnalyzer(positionMode);
+                        try (JournalReader reader = new JournalReader(journal, first, last - first)) {
+                            reader.forEach(analyzer::add);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return analyzer;
+                    })
+                    .reduce(JournalAnalyzer::merge)
+                    .orElseGet(() -> new JournalAnalyzer(positionMode));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // counts one game
+    public void add(GameRecord record) {
+        int mode = record.getMode().ordinal();
+        int result = record.getResult().ordinal();
+        int count = record.getMoveCount();
+        results[mode][result]++;
+        if (count > 0) openings[mode][record.getMove(0)][result]++;
+        if (positionMode != null && record.getMode() != positionMode) return;
+
+        // the user's tokens are X and win with PLAYER_WON, the computer's are O and win with COMPUTER_WON
+        boolean computerToMove = record.getFirstPlayer() == Player.COMPUTER;
+        int userBits = 0;
+        int computerBits = 0;
+        for (int i = 0; i < count; i++) {
+            int ownBits = computerToMove ? computerBits : userBits;
+            int opponentBits = computerToMove ? userBits : computerBits;
+            int index = Bitboard.positionIndex(ownBits, opponentBits);
+            int space = record.getMove(i);
+            int move = index * 9 + space - 1;
+
+            // result for the side to move, 1 for a win, -1 for a loss and 0 for a draw or unfinished game
+            int score = 0;
+            if (record.getResult() == GameState.PLAYER_WON) score = computerToMove ? -1 : 1;
+            if (record.getResult() == GameState.COMPUTER_WON) score = computerToMove ? 1 : -1;
+
+            moveGames[move]++;
+            moveScore[move] += score;
+            if (computerToMove) {
+                computerGames[index]++;
+                if (score < 0) computerLosses[index]++;
+                computerBits |= Bitboard.bit(space);
+            } else {
+                userBits |= Bitboard.bit(space);
+            }
+            computerToMove = !computerToMove;
+        }
+    }
+
+    // adds the counts of the other analyzer to this one and returns this one
+    public JournalAnalyzer merge(JournalAnalyzer other) {
+        for (int mode = 0; mode < MODES.length; mode++) {
+            for (int result = 0; result < RESULTS; result++) {
+                results[mode][result] += other.results[mode][result];
+                for (int space = 1; space <= 9; space++) {
+                    openings[mode][space][result] += other.openings[mode][space][result];
+                }
+            }
+        }
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            computerGames[index] += other.computerGames[index];
+            computerLosses[index] += other.computerLosses[index];
+        }
+        for (int move = 0; move < moveGames.length; move++) {
+            moveGames[move] += other.moveGames[move];
+            moveScore[move] += other.moveScore[move];
+        }
+        return this;
+    }
+
+    public long getGameCount() {
+        long total = 0;
+        for (long[] modeResults : results) {
+            for (long count : modeResults) total += count;
+        }
+        return total;
+    }
+
+    // number of games in the mode that ended with the result
+    public long getResultCount(Game.Mode mode, GameState result) {
+        return results[mode.ordinal()][result.ordinal()];
+    }
+
+    // number of games in the mode that started in the space and ended with the result
+    public long getOpeningCount(Game.Mode mode, int firstSpace, GameState result) {
+        return openings[mode.ordinal()][firstSpace][result.ordinal()];
+    }
+
+    // number of times the move was played from the position, or from any rotation or reflection of it
+    // the position is from the point of view of the side to move
+    public long getMoveGames(int ownBits, int opponentBits, int space) {
+        return canonicalMoves(moveGames)[canonicalMove(ownBits, opponentBits, space)];
+    }
+
+    // wins minus losses for the side that played the move from the position or any rotation or reflection of it
+    public long getMoveScore(int ownBits, int opponentBits, int space) {
+        return canonicalMoves(moveScore)[canonicalMove(ownBits, opponentBits, space)];
+    }
+
+    private static int canonicalMove(int ownBits, int opponentBits, int space) {
+        int key = Symmetry.canonicalKey(ownBits, opponentBits);
+        return Symmetry.keyIndex(key) * 9 + Symmetry.mapSpace(space, Symmetry.keyTransform(key)) - 1;
+    }
+
+    // returns move counts indexed by position index and space with every position added into its canonical form
+    private static long[] canonicalMoves(long[] counts) {
+        long[] canonical = new long[counts.length];
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            int ownBits = ownBits(index);
+            int opponentBits = opponentBits(index);
+            for (int space = 1; space <= 9; space++) {
+                long count = counts[index * 9 + space - 1];
+                if (count != 0) canonical[canonicalMove(ownBits, opponentBits, space)] += count;
+            }
+        }
+        return canonical;
+    }
+
+    // returns position counts with every position added into its canonical form
+    private static long[] canonicalPositions(long[] counts) {
+        long[] canonical = new long[counts.length];
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            if (counts[index] != 0) canonical[Symmetry.keyIndex(Symmetry.canonicalKey(ownBits(index), opponentBits(index)))] += counts[index];
+        }
+        return canonical;
+    }
+
+    // the bitboards of the side to move and the other side from a position index
+    private static int ownBits(int index) {
+        return digitBits(index, 1);
+    }
+
+    private static int opponentBits(int index) {
+        return digitBits(index, 2);
+    }
+
+    private static int digitBits(int index, int digit) {
+        int bits = 0;
+        for (int space = 1, rest = index; space <= 9; space++, rest /= 3) {
+            if (rest % 3 == digit) bits |= Bitboard.bit(space);
+        }
+        return bits;
+    }
+
+    // writes the move with the best average result from every position with at least minGames games as an
+    // opening book for the modes in modeMask
+    public void writeBook(Path path, int modeMask, long minGames) throws IOException {
+        long[] moveGames = canonicalMoves(this.moveGames);
+        long[] moveScore = canonicalMoves(this.moveScore);
+        byte[] moves = new byte[Bitboard.POSITION_COUNT];
+        byte[] values = new byte[Bitboard.POSITION_COUNT];
+        for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+            int best = -1;
+            for (int move = index * 9; move < index * 9 + 9; move++) {
+                if (moveGames[move] < minGames) continue;
+                if (best == -1 || moveScore[move] * moveGames[best] > moveScore[best] * moveGames[move]) best = move;
+            }
+            if (best == -1) continue;
+            moves[index] = (byte) (best - index * 9 + 1);
+            values[index] = (byte) Math.round(100.0 * moveScore[best] / moveGames[best]);
+        }
+        OpeningBook.write(path, modeMask, moves, values);
+    }
+
+    public void printReport() {
+        System.out.printf("%d games%n", getGameCount());
+        for (Game.Mode mode : MODES) {
+            long games = 0;
+            for (long count : results[mode.ordinal()]) games += count;
+            if (games == 0) continue;
+            System.out.printf("%n%s: %d games, %s%n", mode, games, percentages(results[mode.ordinal()], games));
+            for (int space = 1; space <= 9; space++) {
+                long[] opening = openings[mode.ordinal()][space];
+                long openingGames = 0;
+                for (long count : opening) openingGames += count;
+                if (openingGames > 0) System.out.printf("  first move %d: %d games, %s%n", space, openingGames, percentages(opening, openingGames));
+            }
+        }
+
+        System.out.printf("%nPositions where the computer loses most%s:%n", positionMode != null ? " in " + positionMode : "");
+        long[] computerGames = canonicalPositions(this.computerGames);
+        long[] computerLosses = canonicalPositions(this.computerLosses);
+        boolean[] printed = new boolean[Bitboard.POSITION_COUNT];
+        for (int n = 0; n < TOP_POSITIONS; n++) {
+            int worst = -1;
+            for (int index = 0; index < Bitboard.POSITION_COUNT; index++) {
+                if (!printed[index] && computerLosses[index] > 0 && (worst == -1 || computerLosses[index] > computerLosses[worst])) worst = index;
+            }
+            if (worst == -1) break;
+            printed[worst] = true;
+            System.out.printf("  %s  lost %d of %d games (%.1f%%)%n", describe(worst), computerLosses[worst], computerGames[worst],
+                    100.0 * computerLosses[worst] / computerGames[worst]);
+        }
+    }
+
+    private static String percentages(long[] counts, long games) {
+        return String.format("X won %.1f%%, O won %.1f%%, draw %.1f%%",
+                100.0 * counts[GameState.PLAYER_WON.ordinal()] / games,
+                100.0 * counts[GameState.COMPUTER_WON.ordinal()] / games,
+                100.0 * counts[GameState.DRAW.ordinal()] / games);
+    }
+
+    // writes a position index as three rows, with O for the side to move (the computer) and X for the other side
+    private static String describe(int index) {
+        StringBuilder sb = new StringBuilder();
+        for (int space = 1, rest = index; space <= 9; space++, rest /= 3) {
+            sb.append(rest % 3 == 1 ? 'O' : rest % 3 == 2 ? 'X' : '.');
+            if (space % 3 == 0 && space < 9) sb.append('/');
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: JournalAnalyzer <journal> [mode or ALL] [book file] [min games]");
+            return;
+        }
+        Path journal = Paths.get(args[0]);
+        Game.Mode mode = args.length > 1 && !args[1].equalsIgnoreCase("ALL") ? Game.Mode.valueOf(args[1].toUpperCase()) : null;
+        if (args.length > 2 && mode == null) {
+            System.out.println("an opening book is written for one mode, give the mode to analyze instead of ALL");
+            return;
+        }
+
+        long start = System.nanoTime();
+        JournalAnalyzer analyzer = analyze(journal, mode);
+        long elapsed = System.nanoTime() - start;
+        analyzer.printReport();
+        System.out.printf("%nScanned in %.2f s (%.1f million games/sec)%n", elapsed / 1e9, analyzer.getGameCount() / (elapsed / 1e3));
+
+        if (args.length > 2) {
+            long minGames = args.length > 3 ? Long.parseLong(args[3]) : 100;
+            analyzer.writeBook(Paths.get(args[2]), 1 << mode.ordinal(), minGames);
+            System.out.println("Wrote opening book " + args[2]);
+        }
+    }
+}
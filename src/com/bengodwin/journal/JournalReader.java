@@ -0,0 +1,73 @@
+package com.bengodwin.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// reads the records of a GameJournal in order, a buffer at a time, so journals of any size can be read
+// a partial record at the end of the file (from a crash while writing) is ignored
+public class JournalReader implements Closeable {
+    private static final int BUFFER_RECORDS = 8192;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * GameRecord.SIZE);
+    private final long end;
+
+    // opens the journal at path, only records that are complete at this point will be read
+    public JournalReader(Path path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    // opens the journal at path to read count records starting at record first
+    public JournalReader(Path path, long first, long count) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long records = channel.size() / GameRecord.SIZE;
+        long start = Math.min(first, records);
+        end = (start + Math.min(count, records - start)) * GameRecord.SIZE;
+        channel.position(start * GameRecord.SIZE);
+        buffer.flip();
+    }
+
+    // number of complete records in the journal at path
+    public static long recordCount(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.size() / GameRecord.SIZE;
+        }
+    }
+
+    // returns the next record, or null when there are no more
+    public GameRecord next() throws IOException {
+        if (buffer.remaining() < GameRecord.SIZE && !fill()) return null;
+        return GameRecord.read(buffer);
+    }
+
+    // reads every remaining record, passing each one to action
+    public void forEach(Consumer<GameRecord> action) throws IOException {
+        GameRecord record;
+        while ((record = next()) != null) {
+            action.accept(record);
+        }
+    }
+
+    // reads the next buffer of records, returns false at the end of the records being read
+    private boolean fill() throws IOException {
+        buffer.clear();
+        long left = end - channel.position();
+        if (left <= 0) return false;
+        if (left < buffer.capacity()) buffer.limit((int) left);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) break;
+        }
+        buffer.flip();
+        return buffer.remaining() >= GameRecord.SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,221 @@
+package com.bengodwin.metrics;
+
+import com.bengodwin.game.Game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// counters and latency histograms for the computer's moves
+//
+// metrics are off unless the JVM is started with -Dtictactoe.metrics=true. ENABLED is a constant, so every
+// "if (EngineMetrics.ENABLED)" check is removed by the JIT when they are off and costs nothing.
+// When on, the metrics are published over JMX and written to stderr as a JSON line every
+// tictactoe.metrics.dumpSeconds seconds (60 by default, 0 to turn the dump off)
+public class EngineMetrics implements EngineMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("tictactoe.metrics");
+
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999", "max"};
+
+    private final LatencyHistogram[] moveLatency = new LatencyHistogram[Game.Mode.values().length];
+    private final LongAdder playouts = new LongAdder();
+    private final LongAdder playoutNanos = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder transpositionHits = new LongAdder();
+    private final LongAdder transpositionMisses = new LongAdder();
+    private final LongAdder positionTableHits = new LongAdder();
+    private final LongAdder positionTableMisses = new LongAdder();
+    private final LongAdder weightCacheHits = new LongAdder();
+    private final LongAdder weightCacheMisses = new LongAdder();
+    private final LongAdder weightCacheEvictions = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final ThreadMXBean threads;
+
+    static {
+        if (ENABLED) INSTANCE.start(Integer.getInteger("tictactoe.metrics.dumpSeconds", 60));
+    }
+
+    private EngineMetrics() {
+        for (int i = 0; i < moveLatency.length; i++) {
+            moveLatency[i] = new LatencyHistogram();
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        boolean canCount = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+        if (ENABLED && canCount) ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+        this.threads = canCount ? bean : null;
+    }
+
+    public static EngineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private void start(int dumpSeconds) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new javax.management.ObjectName("com.bengodwin:type=EngineMetrics"));
+        } catch (Exception e) {
+            System.err.println("Could not register engine metrics with JMX: " + e);
+        }
+        if (dumpSeconds > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "engine-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(() -> System.err.println(toJson()), dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // the recording methods below should only be called after checking ENABLED
+
+    // bytes allocated so far by the calling thread, or 0 if the JVM can't count them
+    public static long threadAllocatedBytes() {
+        if (INSTANCE.threads == null) return 0;
+        return ((com.sun.management.ThreadMXBean) INSTANCE.threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void recordMove(Game.Mode mode, long nanos, long bytes) {
+        INSTANCE.moveLatency[mode.ordinal()].record(nanos);
+        INSTANCE.allocatedBytes.add(bytes);
+    }
+
+    public static void recordPlayouts(long count, long nanos) {
+        INSTANCE.playouts.add(count);
+        INSTANCE.playoutNanos.add(nanos);
+    }
+
+    public static void recordNode() {
+        INSTANCE.nodes.increment();
+    }
+
+    public static void recordTranspositionProbe(boolean hit) {
+        (hit ? INSTANCE.transpositionHits : INSTANCE.transpositionMisses).increment();
+    }
+
+    public static void recordPositionTableLookup(boolean hit) {
+        (hit ? INSTANCE.positionTableHits : INSTANCE.positionTableMisses).increment();
+    }
+
+    public static void recordWeightCacheLookup(boolean hit) {
+        (hit ? INSTANCE.weightCacheHits : INSTANCE.weightCacheMisses).increment();
+    }
+
+    public static void recordWeightCacheEviction() {
+        INSTANCE.weightCacheEvictions.increment();
+    }
+
+    @Override
+    public long getComputerMoves() {
+        long total = 0;
+        for (LatencyHistogram histogram : moveLatency) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getMoveLatencyNanos() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        for (Game.Mode mode : Game.Mode.values()) {
+            LatencyHistogram histogram = moveLatency[mode.ordinal()];
+            if (histogram.getCount() == 0) continue;
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                latencies.put(mode + "." + PERCENTILE_NAMES[i], histogram.percentile(PERCENTILES[i]));
+            }
+        }
+        return latencies;
+    }
+
+    @Override
+    public long getPlayouts() {
+        return playouts.sum();
+    }
+
+    @Override
+    public double getPlayoutsPerSecond() {
+        long nanos = playoutNanos.sum();
+        return nanos == 0 ? 0 : playouts.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getNodesSearched() {
+        return nodes.sum();
+    }
+
+    @Override
+    public double getTranspositionHitRate() {
+        return hitRate(transpositionHits.sum(), transpositionMisses.sum());
+    }
+
+    @Override
+    public double getPositionTableHitRate() {
+        return hitRate(positionTableHits.sum(), positionTableMisses.sum());
+    }
+
+    @Override
+    public double getWeightCacheHitRate() {
+        return hitRate(weightCacheHits.sum(), weightCacheMisses.sum());
+    }
+
+    @Override
+    public long getWeightCacheEvictions() {
+        return weightCacheEvictions.sum();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    private static double hitRate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    // all of the metrics as a single line of JSON
+    @Override
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"computerMoves\":").append(getComputerMoves());
+        sb.append(",\"moveLatencyNanos\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> latency : getMoveLatencyNanos().entrySet()) {
+            if (!first) sb.append(',');
+            sb.append('"').append(latency.getKey()).append("\":").append(latency.getValue());
+            first = false;
+        }
+        sb.append("},\"playouts\":").append(getPlayouts());
+        sb.append(",\"playoutsPerSecond\":").append(Math.round(getPlayoutsPerSecond()));
+        sb.append(",\"nodesSearched\":").append(getNodesSearched());
+        sb.append(",\"transpositionHitRate\":").append(String.format(Locale.ROOT, "%.4f", getTranspositionHitRate()));
+        sb.append(",\"positionTableHitRate\":").append(String.format(Locale.ROOT, "%.4f", getPositionTableHitRate()));
+        sb.append(",\"weightCacheHitRate\":").append(String.format(Locale.ROOT, "%.4f", getWeightCacheHitRate()));
+        sb.append(",\"weightCacheEvictions\":").append(getWeightCacheEvictions());
+        sb.append(",\"allocatedBytes\":").append(getAllocatedBytes());
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : moveLatency) {
+            histogram.reset();
+        }
+        playouts.reset();
+        playoutNanos.reset();
+        nodes.reset();
+        transpositionHits.reset();
+        transpositionMisses.reset();
+        positionTableHits.reset();
+        positionTableMisses.reset();
+        weightCacheHits.reset();
+        weightCacheMisses.reset();
+        weightCacheEvictions.reset();
+        allocatedBytes.reset();
+    }
+}
@@ -0,0 +1,34 @@
+package com.bengodwin.metrics;
+
+import java.util.Map;
+
+// management interface for EngineMetrics, registered as com.bengodwin:type=EngineMetrics when metrics are enabled
+public interface EngineMetricsMXBean {
+    long getComputerMoves();
+
+    // computer move latency in nanoseconds, keyed by mode and percentile, e.g. MEDIUM.p99
+    Map<String, Long> getMoveLatencyNanos();
+
+    long getPlayouts();
+
+    // playouts per second of time spent in Monte Carlo searches
+    double getPlayoutsPerSecond();
+
+    long getNodesSearched();
+
+    double getTranspositionHitRate();
+
+    double getPositionTableHitRate();
+
+    // lookups and evictions in every WeightCache, see MonteCarloStrategy.setCache
+    double getWeightCacheHitRate();
+
+    long getWeightCacheEvictions();
+
+    // bytes allocated by the threads that called computerMove while they were in it
+    long getAllocatedBytes();
+
+    String toJson();
+
+    void reset();
+}
@@ -0,0 +1,71 @@
+package com.bengodwin.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// histogram of durations in nanoseconds with buckets that grow with the value, in the style of HdrHistogram
+//
+// every power of two range is split into SUB_BUCKETS equal buckets, so any recorded value is reported within
+// about 1 / SUB_BUCKETS (3%) of its true value, from 1 ns up to Long.MAX_VALUE, in a fixed 2K longs of memory.
+// Recording is thread safe and doesn't allocate
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketFor(Math.max(0, nanos)));
+    }
+
+    // adds every value recorded in the other histogram to this one
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) counts.addAndGet(i, count);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // returns the value at the given fraction (0 to 1) of the recorded values, 0 if nothing has been recorded
+    public long percentile(double fraction) {
+        long total = getCount();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return highestValueIn(i);
+        }
+        return highestValueIn(BUCKET_COUNT - 1);
+    }
+
+    // values below SUB_BUCKETS get a bucket each, larger values share a bucket with others that have the same
+    // highest bit and the same next SUB_BUCKET_BITS bits
+    private static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,316 @@
+package com.bengodwin.server;
+
+import com.bengodwin.game.BatchEvaluator;
+import com.bengodwin.game.Bitboard;
+import com.bengodwin.game.Game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// headless server that hosts many games at once and plays them over a line based text protocol
+//
+// one selector thread accepts connections, reads requests and writes replies, and a pool of worker threads runs
+// the requests, so a slow computer move never blocks other connections. Requests on one connection are answered
+// in the order they were sent. Games live in a SessionRegistry and are removed after IDLE_TIMEOUT_SECONDS without
+// a request. Each request is one line and gets one line back:
+//
+//   NEW <EASY|MEDIUM|IMPOSSIBLE>   ->  OK <game id>
+//   MOVE <game id> <space 1-9>     ->  OK <game state>
+//   AI <game id>                   ->  OK <space> <game state>
+//   END <game id>                  ->  OK
+//   EVAL <board> [<board> ...]     ->  OK <space>:<score> for each board
+//
+// boards for EVAL are 9 characters of X, O or . for spaces 1 - 9, X moves first. They are answered together by
+// BatchEvaluator with the best space (-1 if the game is over) and the negamax score for the side to move.
+// Request lines are at most MAX_LINE characters, except EVAL lines which can hold up to MAX_EVAL_BOARDS boards.
+// any request that can't be carried out gets a line starting with ERR, including lines that are too long
+public class GameServer implements Runnable {
+    public static final int DEFAULT_PORT = 9339;
+    // games that haven't had a request for this long are removed
+    private static final long IDLE_TIMEOUT_SECONDS = 300;
+    private static final long EVICTION_INTERVAL_SECONDS = 30;
+    // longest request line accepted, longer lines are answered with ERR
+    private static final int MAX_LINE = 256;
+    // most boards in one EVAL request, enough to reach BatchEvaluator's parallel path
+    static final int MAX_EVAL_BOARDS = 2 * BatchEvaluator.PARALLEL_THRESHOLD;
+    private static final int MAX_EVAL_LINE = "EVAL".length() + 10 * MAX_EVAL_BOARDS;
+    // queued in place of a request line that was too long, compared by reference
+    private static final String TOO_LONG = new String("");
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    // connections that have replies waiting, handed from the workers to the selector thread
+    private final Queue<Connection> readyToWrite = new ConcurrentLinkedQueue<>();
+
+    private final SessionRegistry games;
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean running = true;
+
+    public GameServer(int port, int workerThreads) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "game-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        games = new SessionRegistry(workerThreads * 4, IDLE_TIMEOUT_SECONDS);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "game-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(games::evictIdle, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // runs the selector loop until close is called
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection ready;
+                while ((ready = readyToWrite.poll()) != null) {
+                    if (ready.key.isValid()) ready.key.interestOps(ready.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) ((Connection) key.attachment()).read();
+                        if (key.isValid() && key.isWritable()) ((Connection) key.attachment()).write();
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        workers.shutdown();
+        evictor.shutdown();
+        serverChannel.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key));
+    }
+
+    // carries out one request line and returns the reply line without the line break
+    String handle(String line) {
+        String[] parts = line.trim().split(" ");
+        try {
+            switch (parts[0]) {
+                case "NEW":
+                    return newGame(Game.Mode.valueOf(parts[1]));
+                case "MOVE":
+                    return move(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+                case "AI":
+                    return computerMove(Long.parseLong(parts[1]));
+                case "END":
+                    return games.remove(Long.parseLong(parts[1])) ? "OK" : "ERR unknown game";
+                case "EVAL":
+                    return evaluate(parts);
+                default:
+                    return "ERR unknown request";
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return "ERR bad request";
+        } catch (RuntimeException e) {
+            // every request must get a reply, or the connection waits for it forever
+            e.printStackTrace();
+            return "ERR internal error";
+        }
+    }
+
+    private String newGame(Game.Mode mode) {
+        if (mode == Game.Mode.TWO_PLAYER) return "ERR unsupported mode";
+        return "OK " + games.create(mode);
+    }
+
+    private String move(long id, int space) {
+        String reply = games.apply(id, game -> {
+            if (!game.enterMove(space)) return "ERR illegal move";
+            return "OK " + game.getGameState();
+        });
+        return reply != null ? reply : "ERR unknown game";
+    }
+
+    private String computerMove(long id) {
+        String reply = games.apply(id, game -> {
+            int space = game.computerMove();
+            if (space < 0) return "ERR not the computer's turn";
+            return "OK " + space + " " + game.getGameState();
+        });
+        return reply != null ? reply : "ERR unknown game";
+    }
+
+    private String evaluate(String[] parts) {
+        if (parts.length < 2) return "ERR bad request";
+        if (parts.length - 1 > MAX_EVAL_BOARDS) return "ERR too many boards";
+        int[] positions = new int[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            positions[i - 1] = parseBoard(parts[i]);
+        }
+        BatchEvaluator.Result result = BatchEvaluator.evaluate(positions);
+        StringBuilder reply = new StringBuilder("OK");
+        for (int i = 0; i < result.size(); i++) {
+            reply.append(' ').append(result.getMove(i)).append(':').append(result.getValue(i));
+        }
+        return reply.toString();
+    }
+
+    // turns a board like X.O.X.... into a packed game, X is the user and O the computer
+    private static int parseBoard(String board) {
+        if (board.length() != 9) throw new IllegalArgumentException("Board must have 9 spaces");
+        int playerBits = 0;
+        int computerBits = 0;
+        for (int space = 1; space <= 9; space++) {
+            char token = board.charAt(space - 1);
+            if (token == 'X') playerBits |= Bitboard.bit(space);
+            else if (token == 'O') computerBits |= Bitboard.bit(space);
+            else if (token != '.') throw new IllegalArgumentException("Unknown token " + token);
+        }
+        int difference = Integer.bitCount(playerBits) - Integer.bitCount(computerBits);
+        if (difference != 0 && difference != 1) throw new IllegalArgumentException("Not X or O's turn");
+        // when X has one more token the user played last and it is O's turn
+        return playerBits | computerBits << 9 | difference << 18;
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+
+    // state for one client connection, only used by the selector thread except for the reply queue
+    private class Connection {
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private final StringBuilder line = new StringBuilder();
+        // longest the line being read can get, raised to MAX_EVAL_LINE once it turns out to be an EVAL request
+        private int lineLimit = MAX_LINE;
+        // true while skipping the rest of a line that was too long
+        private boolean skipping;
+        // request lines waiting for the one in progress to finish, so replies keep the request order. The connection
+        // isn't read while a request is in progress, so this only holds the lines from one read
+        private final Queue<String> pending = new ArrayDeque<>();
+        private boolean busy;
+        private final Queue<ByteBuffer> replies = new ConcurrentLinkedQueue<>();
+
+        Connection(SelectionKey key) {
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            readBuffer.clear();
+            int count = ((SocketChannel) key.channel()).read(readBuffer);
+            if (count < 0) {
+                key.cancel();
+                key.channel().close();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                char c = (char) readBuffer.get();
+                if (c == '\n') {
+                    pending.add(skipping ? TOO_LONG : line.toString());
+                    endLine();
+                } else if (c != '\r' && !skipping) {
+                    if (line.length() == lineLimit) {
+                        if (lineLimit == MAX_LINE && line.indexOf("EVAL ") == 0) {
+                            lineLimit = MAX_EVAL_LINE;
+                        } else {
+                            skipping = true;
+                            continue;
+                        }
+                    }
+                    line.append(c);
+                }
+            }
+            dispatch();
+            if (busy) key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        private void endLine() {
+            line.setLength(0);
+            // don't hold on to the space of a long EVAL line
+            if (line.capacity() > MAX_LINE * 4) line.trimToSize();
+            lineLimit = MAX_LINE;
+            skipping = false;
+        }
+
+        // hands the next pending request to a worker if none is running
+        private void dispatch() {
+            if (busy || pending.isEmpty()) return;
+            busy = true;
+            String request = pending.poll();
+            workers.execute(() -> {
+                String reply = (request == TOO_LONG ? "ERR request too long" : handle(request)) + "\n";
+                replies.add(ByteBuffer.wrap(reply.getBytes(StandardCharsets.US_ASCII)));
+                readyToWrite.add(this);
+                selector.wakeup();
+            });
+        }
+
+        void write() throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            ByteBuffer reply;
+            while ((reply = replies.peek()) != null) {
+                channel.write(reply);
+                if (reply.hasRemaining()) return;
+                replies.poll();
+                busy = false;
+            }
+            dispatch();
+            // read more requests once the ones already read have been answered
+            key.interestOps(busy ? 0 : SelectionKey.OP_READ);
+        }
+    }
+
+    // starts a server, arguments are the port and the number of worker threads
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workerThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(port, workerThreads);
+        System.out.println("Tic tac toe server listening on 127.0.0.1:" + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.bengodwin.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// load generator for GameServer, opens a number of connections and plays games on each as fast as the server answers
+// the user moves are random and every computer move is timed. When it's done it prints games per second and the
+// computer move latency percentiles
+//
+// arguments: connections, games per connection, mode, host, port. With no host a server is started in this JVM
+public class LoadClient {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int gamesPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String mode = args.length > 2 ? args[2] : "IMPOSSIBLE";
+        String host = args.length > 3 ? args[3] : null;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : GameServer.DEFAULT_PORT;
+
+        GameServer server = null;
+        if (host == null) {
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            new Thread(server, "game-selector").start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(connections);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            String clientHost = host;
+            int clientPort = port;
+            long seed = i;
+            results.add(clients.submit(() -> play(clientHost, clientPort, mode, gamesPerConnection, new Random(seed))));
+        }
+
+        // gather the latencies from every connection into one sorted array
+        List<long[]> latencies = new ArrayList<>();
+        int total = 0;
+        for (Future<long[]> result : results) {
+            long[] connectionLatencies = result.get();
+            latencies.add(connectionLatencies);
+            total += connectionLatencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        if (server != null) server.close();
+
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] connectionLatencies : latencies) {
+            System.arraycopy(connectionLatencies, 0, all, offset, connectionLatencies.length);
+            offset += connectionLatencies.length;
+        }
+        Arrays.sort(all);
+
+        int games = connections * gamesPerConnection;
+        System.out.printf("%d games (%s) over %d connections in %.2f s%n", games, mode, connections, elapsed / 1e9);
+        System.out.printf("games/sec: %.0f%n", games / (elapsed / 1e9));
+        System.out.printf("computer moves: %d, latency us p50 %.1f p99 %.1f max %.1f%n", total,
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, total > 0 ? all[total - 1] / 1e3 : 0.0);
+    }
+
+    // plays games on one connection and returns the round trip time of every computer move in nanoseconds
+    private static long[] play(String host, int port, String mode, int games, Random random) throws IOException {
+        long[] latencies = new long[games * 5];
+        int count = 0;
+
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+
+            for (int g = 0; g < games; g++) {
+                String id = request(in, out, "NEW " + mode).substring(3);
+                int occupied = 0;
+                String state = "UNFINISHED";
+
+                while (state.equals("UNFINISHED")) {
+                    // pick a random empty space for the user
+                    int space;
+                    do {
+                        space = random.nextInt(9) + 1;
+                    } while ((occupied & (1 << (space - 1))) != 0);
+                    occupied |= 1 << (space - 1);
+                    state = request(in, out, "MOVE " + id + " " + space).substring(3);
+                    if (!state.equals("UNFINISHED")) break;
+
+                    long sent = System.nanoTime();
+                    String[] reply = request(in, out, "AI " + id).split(" ");
+                    latencies[count++] = System.nanoTime() - sent;
+                    occupied |= 1 << (Integer.parseInt(reply[1]) - 1);
+                    state = reply[2];
+                }
+
+                request(in, out, "END " + id);
+            }
+        }
+
+        return Arrays.copyOf(latencies, count);
+    }
+
+    // sends one request and returns the reply, failing on an ERR reply
+    private static String request(BufferedReader in, OutputStream out, String request) throws IOException {
+        out.write((request + "\n").getBytes(StandardCharsets.US_ASCII));
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith("OK")) throw new IOException(request + " failed: " + reply);
+        return reply;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
@@ -0,0 +1,228 @@
+package com.bengodwin.server;
+
+import com.bengodwin.game.Game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// registry of games for many concurrent sessions, keyed by session id
+//
+// games are stored as the int from Game.pack in open addressing hash tables of primitive arrays, so a session takes
+// about 20 bytes plus the table's spare capacity. Sessions are split across stripes by id, and each stripe has its own
+// lock. The lock is only held to read or write a session's packed game, the action on the game runs without it, so a
+// slow computer move doesn't hold up the other sessions in its stripe. Every write bumps the session's version, and an
+// action whose session was written while it ran is run again on the new state.
+// Sessions that haven't been used for the idle timeout are removed by evictIdle
+public class SessionRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+    // id 0 marks an empty slot in the tables, so session ids start at 1
+    private static final long EMPTY = 0;
+
+    private final Stripe[] stripes;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final long idleTimeoutSeconds;
+    private final long startNanos = System.nanoTime();
+
+    // stripeCount is rounded up to a power of two
+    public SessionRegistry(int stripeCount, long idleTimeoutSeconds) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    // starts a new game in the given mode and returns its session id
+    public long create(Game.Mode mode) {
+        Game game = new Game();
+        game.setMode(mode);
+        long id = nextId.getAndIncrement();
+        Stripe stripe = stripeFor(id);
+        stripe.lock.lock();
+        try {
+            stripe.put(id, game.pack(), 0, now());
+        } finally {
+            stripe.lock.unlock();
+        }
+        return id;
+    }
+
+    // runs the action on the session's game and stores the game's new state, returns null if there is no such session
+    // the action can be run more than once if other requests change the same session while it runs, so it shouldn't
+    // have side effects outside the game. Only the result of the run whose state was stored is returned
+    public <T> T apply(long id, Function<Game, T> action) {
+        Stripe stripe = stripeFor(id);
+        while (true) {
+            int state;
+            int version;
+            stripe.lock.lock();
+            try {
+                int slot = stripe.find(id);
+                if (slot < 0) return null;
+                state = stripe.states[slot];
+                version = stripe.versions[slot];
+            } finally {
+                stripe.lock.unlock();
+            }
+
+            Game game = Game.unpack(state);
+            T result = action.apply(game);
+
+            stripe.lock.lock();
+            try {
+                // slots move when other sessions are deleted or the table grows, so look the session up again
+                int slot = stripe.find(id);
+                if (slot < 0) return null;
+                if (stripe.versions[slot] == version) {
+                    stripe.states[slot] = game.pack();
+                    stripe.versions[slot] = version + 1;
+                    stripe.lastAccess[slot] = now();
+                    return result;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // removes the session, returns false if there is no such session
+    public boolean remove(long id) {
+        Stripe stripe = stripeFor(id);
+        stripe.lock.lock();
+        try {
+            int slot = stripe.find(id);
+            if (slot < 0) return false;
+            stripe.delete(slot);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // removes every session that hasn't been used for the idle timeout and returns how many were removed
+    public int evictIdle() {
+        int cutoff = (int) (now() - idleTimeoutSeconds);
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                int slot = 0;
+                while (slot < stripe.ids.length) {
+                    // deleting moves a later entry into this slot, so only move on when nothing was deleted
+                    if (stripe.ids[slot] != EMPTY && stripe.lastAccess[slot] < cutoff) {
+                        stripe.delete(slot);
+                        evicted++;
+                    } else {
+                        slot++;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(long id) {
+        return stripes[(int) mix(id) & (stripes.length - 1)];
+    }
+
+    // seconds since the registry was created
+    private int now() {
+        return (int) ((System.nanoTime() - startNanos) / 1_000_000_000L);
+    }
+
+    // spreads sequential ids over stripes and slots
+    private static long mix(long id) {
+        long z = id * 0x9E3779B97F4A7C15L;
+        return z ^ (z >>> 32);
+    }
+
+    // one lock and a linear probing hash table of session ids, packed games, versions and last access times
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        long[] ids = new long[INITIAL_CAPACITY];
+        int[] states = new int[INITIAL_CAPACITY];
+        int[] versions = new int[INITIAL_CAPACITY];
+        int[] lastAccess = new int[INITIAL_CAPACITY];
+        int size;
+
+        // returns the slot holding id, or -1
+        int find(long id) {
+            int mask = ids.length - 1;
+            for (int slot = home(id, mask); ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (ids[slot] == id) return slot;
+            }
+            return -1;
+        }
+
+        void put(long id, int state, int version, int time) {
+            // keep the table at most three quarters full
+            if ((size + 1) * 4 > ids.length * 3) resize(ids.length * 2);
+            int mask = ids.length - 1;
+            int slot = home(id, mask);
+            while (ids[slot] != EMPTY && ids[slot] != id) slot = (slot + 1) & mask;
+            if (ids[slot] == EMPTY) size++;
+            ids[slot] = id;
+            states[slot] = state;
+            versions[slot] = version;
+            lastAccess[slot] = time;
+        }
+
+        // empties the slot and shifts back any later entries in the same run so lookups still find them
+        void delete(int slot) {
+            int mask = ids.length - 1;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (ids[next] != EMPTY) {
+                int home = home(ids[next], mask);
+                // the entry can fill the gap if its home slot is not between the gap and its current slot
+                boolean canMove = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+                if (canMove) {
+                    ids[gap] = ids[next];
+                    states[gap] = states[next];
+                    versions[gap] = versions[next];
+                    lastAccess[gap] = lastAccess[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            ids[gap] = EMPTY;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = ids;
+            int[] oldStates = states;
+            int[] oldVersions = versions;
+            int[] oldLastAccess = lastAccess;
+            ids = new long[capacity];
+            states = new int[capacity];
+            versions = new int[capacity];
+            lastAccess = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) put(oldIds[i], oldStates[i], oldVersions[i], oldLastAccess[i]);
+            }
+        }
+
+        private static int home(long id, int mask) {
+            return (int) (mix(id) >>> 16) & mask;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.bengodwin.tictactoegui;
 
 import com.bengodwin.game.Game;
+import com.bengodwin.game.GameSnapshot;
 import com.bengodwin.game.GameState;
+import com.bengodwin.game.Player;
+import com.bengodwin.journal.GameJournal;
+import com.bengodwin.journal.GameRecord;
 import javafx.animation.*;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
@@ -18,7 +19,17 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.*;
 import javafx.util.Duration;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class Controller {
     private enum State {
@@ -29,6 +40,7 @@ public class Controller {
     private static final int NUM_COLS = 3;
 
     private static final int TOKEN_WIDTH = 10;
+    private static final int TOKEN_RADIUS = 25;
     private static final int WINNING_PATH_WIDTH = 8;
 
     private static final Color PLAYER_COLOR = Color.rgb(185, 163, 116);
@@ -39,9 +51,33 @@ public class Controller {
     private static final Duration TOKEN_DURATION = Duration.millis(250);
     private static final Duration WIN_LINE_DURATION = Duration.millis(325);
 
+    // computer moves are searched on this thread so the JavaFX thread keeps drawing while the computer thinks
+    private static final ExecutorService COMPUTER_MOVE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "computer-move");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // every finished game is recorded here, the journal is opened and written on the computer move thread
+    // -Dtictactoe.journal=false turns recording off
+    private static final boolean JOURNAL_ENABLED = Boolean.parseBoolean(System.getProperty("tictactoe.journal", "true"));
+    private static final java.nio.file.Path JOURNAL_PATH = Paths.get(System.getProperty("user.home"), ".tictactoe", "games.journal");
+    private static GameJournal journal;
+
     private ArrayList<Pane> panes;
+    // token nodes are created once for every pane and shown or hidden as games are played
+    private ArrayList<Path[]> xTokens;
+    private ArrayList<Path> oTokens;
+    // the line crossing out a winning row, drawn on a pane in front of the grid
+    private Pane winningPane;
+    private Path winningPath;
+    private MoveTo winningPathStart;
+    private LineTo winningPathEnd;
     private Game game;
+    // the board as it is drawn on screen, only changed on the JavaFX thread
+    private GameSnapshot shown;
     private State state;
+    // true from when the user's move is entered until the computer's reply has been drawn
+    private boolean thinking;
     private int playerScore;
     private int computerScore;
 
@@ -63,13 +99,14 @@ public class Controller {
     // constructor - add listener for user clicking on new mode
     public Controller() {
         game = new Game();
+        shown = game.snapshot();
         panes = new ArrayList<>();
+        xTokens = new ArrayList<>();
+        oTokens = new ArrayList<>();
         state = State.INACTIVE;
         modeGroup = new ToggleGroup();
-        modeGroup.selectedToggleProperty().addListener(e -> {
-            setMode();
-            newGame();
-        });
+        // the mode is only set on the new game, the old game may still be searching on the computer move thread
+        modeGroup.selectedToggleProperty().addListener(e -> newGame());
     }
 
 
@@ -86,9 +123,30 @@ public class Controller {
                 if (j == 1) pane.getStyleClass().add("middle-col");
                 if (i == 1 && j == 1) pane.getStyleClass().add("middle-cell");
                 grid.add(pane, j, i);
+
+                // add a hidden X and O to the pane, drawToken shows them
+                Path[] xToken = makeXToken();
+                Path oToken = makeOToken();
+                xTokens.add(xToken);
+                oTokens.add(oToken);
+                pane.getChildren().addAll(xToken[0], xToken[1], oToken);
             }
         }
 
+        // add a pane in front of the grid for the winning line, it lets clicks through to the grid
+        winningPathStart = new MoveTo();
+        winningPathEnd = new LineTo();
+        winningPath = new Path(winningPathStart, winningPathEnd);
+        winningPath.setStrokeWidth(WINNING_PATH_WIDTH);
+        winningPath.setStroke(COMPUTER_COLOR);
+        winningPath.setVisible(false);
+        // the line is placed by coordinates, so it shouldn't change the size of the pane
+        winningPath.setManaged(false);
+        winningPane = new Pane(winningPath);
+        winningPane.setBackground(null);
+        winningPane.setMouseTransparent(true);
+        centerStack.getChildren().add(winningPane);
+
         // create the buttons that will go into the toggle group for changing the mode at the top of the GUI
         modeBox.paddingProperty().setValue(new Insets(0, 5, 0, 5));
         modeBox.setSpacing(5);
@@ -127,13 +185,16 @@ public class Controller {
         }
 
         game = new Game();
+        shown = game.snapshot();
         setMode();
         setMessage();
 
+        // a computer move still being searched belongs to the old game, its result is ignored when it arrives
+        thinking = false;
         state = State.ACTIVE;
     }
 
-    // sets the game mode, called by the ToggleGroup named modeGroup
+    // sets the game mode to the one selected in the ToggleGroup named modeGroup, called when a new game starts
     private void setMode() {
         if (modeGroup.getSelectedToggle() == null) return; // catch in case toggles aren't initialized
         switch (modeGroup.getSelectedToggle().getUserData().toString()) {
@@ -164,15 +225,20 @@ public class Controller {
 
     // space clicked - draw the appropriate token in the appropriate space
     private void spaceClicked(int space) {
-        if (state == State.INACTIVE) return;
+        // ignore clicks while the computer is choosing its move, the game is being changed on another thread
+        if (state == State.INACTIVE || thinking) return;
 
         // if two player, enter the token of the player that didn't play last in the clicked space and don't get a computer move
         if (game.getMode() == Game.Mode.TWO_PLAYER) {
             int token = game.enterTwoPlayerMove(space);
+            shown = game.snapshot();
             if (token > 0) drawToken(space, token, false);
         // if not two player, enter the user token in the space and get a computer move
         } else {
-            if (game.enterMove(space)) drawToken(space, 1, true);
+            if (game.enterMove(space)) {
+                shown = game.snapshot();
+                drawToken(space, 1, true);
+            }
         }
     }
 
@@ -181,39 +247,46 @@ public class Controller {
         // break if space is out of range
         if (space < 1 || space > 9) return;
 
-        // get the pane in the grid that corresponds to the space in the game board
-        Pane pane = panes.get(space - 1);
-
         // token is 1 - draw an X in the pane
         // this corresponds to the User player, in one person modes call for a computer move
         // then draw that token as well
         if (token == 1) {
-            Path line1 = new Path(
-                    new MoveTo(30, 30),
-                    new LineTo(70, 70)
-            );
-            line1.setStroke(PLAYER_COLOR);
-            line1.setStrokeWidth(TOKEN_WIDTH);
-            Path line2 = new Path(
-                    new MoveTo(30, 70),
-                    new LineTo(70, 30)
-            );
-            line2.setStroke(PLAYER_COLOR);
-            line2.setStrokeWidth(TOKEN_WIDTH);
-
-            pane.getChildren().addAll(line1, line2);
-            Animation animation_1 = clipAnimation(line1, TOKEN_DURATION);
-            Animation animation_2 = clipAnimation(line2, TOKEN_DURATION);
+            Path line1 = xTokens.get(space - 1)[0];
+            Path line2 = xTokens.get(space - 1)[1];
 
-            if (thenGetComputerMove) {
-                int computerSpace = game.computerMove();
-                // if the game is over, computerSpace will be invalid, call setMessage so the game doesn't get stuck
-                if (computerSpace > 0) {
-                    animation_2.setOnFinished(e -> drawToken(computerSpace, 2, false));
-                } else {
-                    animation_2.setOnFinished(e -> setMessage());
+            Animation animation_1 = strokeAnimation(line1, lineLength(line1), TOKEN_DURATION);
+            Animation animation_2 = strokeAnimation(line2, lineLength(line2), TOKEN_DURATION);
+            line1.setVisible(true);
+            line2.setVisible(true);
 
-                }
+            if (thenGetComputerMove) {
+                // search for the computer move in the background while the X is drawn, then draw the O on the
+                // JavaFX thread once both are done. The search hands back a snapshot of the game after its move,
+                // so nothing here reads the game while the other thread is changing it
+                Game movingGame = game;
+                thinking = true;
+                CompletableFuture<GameSnapshot> computerMove = CompletableFuture.supplyAsync(() -> {
+                    movingGame.computerMove();
+                    return movingGame.snapshot();
+                }, COMPUTER_MOVE_EXECUTOR);
+                animation_2.setOnFinished(e -> computerMove.whenComplete((moved, error) -> Platform.runLater(() -> {
+                    // a new game was started while the computer was thinking
+                    if (game != movingGame) return;
+                    thinking = false;
+                    // the search failed and the computer didn't move, hand the turn back so the board isn't locked
+                    if (error != null) {
+                        error.printStackTrace();
+                        movingGame.setLastPlayed(Player.COMPUTER);
+                    }
+
+                    // if the game was already over the computer didn't move, call setMessage so the game doesn't get stuck
+                    if (error == null && moved.getLastPlayed() == Player.COMPUTER) {
+                        shown = moved;
+                        drawToken(moved.getLastSpace(), 2, false);
+                    } else {
+                        setMessage();
+                    }
+                })));
             // if the game is in two player mode, don't get a computer move
             } else {
                 animation_2.setOnFinished(e -> setMessage());
@@ -224,35 +297,70 @@ public class Controller {
         }
         // draw a circle in the pane, corresponds to Computer move if not two player
         if (token == 2) {
-            int center = 50;
-            int radius = 25;
-            MoveTo startPoint = new MoveTo(center, center - radius);
-            ArcTo arc = new ArcTo(radius, radius, 0, center - 1, center - radius, true, true);
-
-            Path circle = new Path(
-                    startPoint,
-                    arc,
-                    new ClosePath()
-            );
-            circle.setStrokeWidth(TOKEN_WIDTH);
-            circle.setStroke(COMPUTER_COLOR);
-            circle.setFill(null);
-            pane.getChildren().add(circle);
-
-            Animation circle_animation = clipAnimation(circle, TOKEN_DURATION);
+            Path circle = oTokens.get(space - 1);
+
+            Animation circle_animation = strokeAnimation(circle, 2 * Math.PI * TOKEN_RADIUS, TOKEN_DURATION);
+            circle.setVisible(true);
             circle_animation.setOnFinished(e -> setMessage());
 
             circle_animation.play();
         }
     }
 
+    // returns the two hidden lines of an X token
+    private Path[] makeXToken() {
+        Path line1 = new Path(
+                new MoveTo(30, 30),
+                new LineTo(70, 70)
+        );
+        Path line2 = new Path(
+                new MoveTo(30, 70),
+                new LineTo(70, 30)
+        );
+        for (Path line : new Path[]{line1, line2}) {
+            line.setStroke(PLAYER_COLOR);
+            line.setStrokeWidth(TOKEN_WIDTH);
+            line.setVisible(false);
+        }
+        return new Path[]{line1, line2};
+    }
+
+    // returns a hidden O token
+    private Path makeOToken() {
+        int center = 50;
+        MoveTo startPoint = new MoveTo(center, center - TOKEN_RADIUS);
+        ArcTo arc = new ArcTo(TOKEN_RADIUS, TOKEN_RADIUS, 0, center - 1, center - TOKEN_RADIUS, true, true);
+
+        Path circle = new Path(
+                startPoint,
+                arc,
+                new ClosePath()
+        );
+        circle.setStrokeWidth(TOKEN_WIDTH);
+        circle.setStroke(COMPUTER_COLOR);
+        circle.setFill(null);
+        circle.setVisible(false);
+        return circle;
+    }
+
+    // hides every token on the board so the board is empty for the next game
+    private void hideTokens() {
+        for (Path[] xToken : xTokens) {
+            xToken[0].setVisible(false);
+            xToken[1].setVisible(false);
+        }
+        for (Path oToken : oTokens) {
+            oToken.setVisible(false);
+        }
+    }
+
     // checks the status of the game, if the game is over sets the label text and starts the transition
     private void setMessage() {
-        if (game.getGameState() == GameState.UNFINISHED) {
+        if (shown.getGameState() == GameState.UNFINISHED) {
             return;
         }
 
-        switch (game.getGameState()) {
+        switch (shown.getGameState()) {
             case DRAW:
                 messageLabel.setText("Draw");
                 break;
@@ -267,6 +375,7 @@ public class Controller {
             default:
                 break;
         }
+        recordGame(GameRecord.of(game));
 
         fadeBetween(grid, messageLabel, false);
 
@@ -277,6 +386,44 @@ public class Controller {
         label.setText(Integer.toString(score));
     }
 
+    // appends a finished game to the journal in the background, a journal that can't be written is only reported
+    private static void recordGame(GameRecord record) {
+        if (!JOURNAL_ENABLED) return;
+        COMPUTER_MOVE_EXECUTOR.execute(() -> {
+            try {
+                if (journal == null) {
+                    Files.createDirectories(JOURNAL_PATH.getParent());
+                    journal = new GameJournal(JOURNAL_PATH);
+                }
+                journal.append(record);
+                journal.commit();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // closes the journal once the games already queued have been recorded, called when the application stops
+    static void closeJournal() {
+        Future<?> closed = COMPUTER_MOVE_EXECUTOR.submit(() -> {
+            if (journal == null) return;
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journal = null;
+        });
+        try {
+            // a computer move still being searched is waited for too, but not for long
+            closed.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+        }
+    }
+
     // creates and plays the animations when a game is won or reset
     private void fadeBetween(Node outNode, Node inNode, boolean fast) {
         // pause before fading out first node
@@ -296,14 +443,10 @@ public class Controller {
         fadeOut.setFromValue(1.0);
         fadeOut.setToValue(0.0);
         parallelFadeOut.getChildren().add(fadeOut);
-        // if the node being taken off screen is the grid, clear out all children from each pane
+        // if the node being taken off screen is the grid, hide the tokens in each pane
         // in the grid after the fade out happens, removing the visual tokens from the GUI board
         if (outNode == grid) {
-            fadeOut.setOnFinished(e -> {
-                for (Pane pane : panes) {
-                    pane.getChildren().clear();
-                }
-            });
+            fadeOut.setOnFinished(e -> hideTokens());
         }
         // if the node being taken off screen is the message, set visible to false after the message
         // has faded off the screen
@@ -337,7 +480,7 @@ public class Controller {
             return;
         }
 
-        switch (game.getGameState()) {
+        switch (shown.getGameState()) {
             case UNFINISHED:
                 sequentialTransition.play();
                 return;
@@ -346,34 +489,22 @@ public class Controller {
                 break;
             default:
                 // remaining two states - a player has won.
-                // 1. Create a pane in front of the grid to draw the line on
-                // 2. Get the path for the winning line and add it to the pane
-                // 3. Get the animation to draw the winning line
-                // 4. Set the callback on the animation to call the sequential transition from above
-                // 5. Add the path to the fadeOut group, so it goes out with the grid in parallel
-                // 6. play the animation
-                Pane drawPane = new Pane();
-                drawPane.setBackground(null);
-                ObservableList<Node> children = FXCollections.observableArrayList(centerStack.getChildren());
-                children.add(drawPane);
-                centerStack.getChildren().setAll(children);
-
-                Path path = makeWinningPath();
-                drawPane.getChildren().add(path);
-
-                Animation path_transition = clipAnimation(path, WIN_LINE_DURATION);
+                // 1. Move the winning line to the winning row and show it on the pane in front of the grid
+                // 2. Get the animation to draw the winning line
+                // 3. Set the callback on the animation to call the sequential transition from above
+                // 4. Add the line to the fadeOut group, so it goes out with the grid in parallel
+                // 5. play the animation
+                double length = updateWinningPath();
+                winningPath.setOpacity(1.0);
+                Animation path_transition = strokeAnimation(winningPath, length, WIN_LINE_DURATION);
+                winningPath.setVisible(length > 0);
                 path_transition.setOnFinished(e -> sequentialTransition.play());
 
-                FadeTransition fadeWinningLine = new FadeTransition(FADE_DURATION, path);
+                FadeTransition fadeWinningLine = new FadeTransition(FADE_DURATION, winningPath);
                 fadeWinningLine.setFromValue(1.0);
                 fadeWinningLine.setToValue(0.0);
-                // after the winning line fades off the screen with the grid, remove it and the
-                // pane it's drawn on from the stack pane
-                fadeWinningLine.setOnFinished(e -> {
-                    drawPane.getChildren().clear();
-                    children.remove(drawPane);
-                    centerStack.getChildren().setAll(children);
-                });
+                // after the winning line fades off the screen with the grid, hide it until the next win
+                fadeWinningLine.setOnFinished(e -> winningPath.setVisible(false));
 
                 parallelFadeOut.getChildren().add(fadeWinningLine);
 
@@ -382,14 +513,15 @@ public class Controller {
         }
     }
 
-    // returns the path from the start of the winning row to the end of the winning row
-    private Path makeWinningPath() {
-        // get the stating and ending space from the Game
-        int start = game.getWinningRowStart();
-        int end = game.getWinningRowEnd();
+    // moves the winning line to run from the start of the winning row to the end of the winning row
+    // returns the length of the line, or 0 if there is no valid winning row
+    private double updateWinningPath() {
+        // get the stating and ending space from the board on screen
+        int start = shown.getWinningRowStart();
+        int end = shown.getWinningRowEnd();
 
         // catch impossible row and return empty path
-        if (start < 1 || (start > 4 && start != 7) || (end < 6 && end != 3) || end > 9) return new Path();
+        if (start < 1 || (start > 4 && start != 7) || (end < 6 && end != 3) || end > 9) return 0;
 
         double startX = -1;
         double startY = -1;
@@ -436,44 +568,49 @@ public class Controller {
         }
         // catch in case any of the coordinates weren't updated
         if (startX == -1 || startY == -1 || endX == -1 || endY == -1) {
-            return new Path();
+            return 0;
         }
 
-        Path path = new Path(
-                new MoveTo(startX, startY),
-                new LineTo(endX, endY)
-        );
-        path.setStrokeWidth(WINNING_PATH_WIDTH);
-        path.setStroke(COMPUTER_COLOR);
+        winningPathStart.setX(startX);
+        winningPathStart.setY(startY);
+        winningPathEnd.setX(endX);
+        winningPathEnd.setY(endY);
 
-        return path;
+        return lineLength(winningPath);
     }
 
-    // returns an animation that will animate the shape of the path over the specified duration
-    private Animation clipAnimation(Path path, Duration duration) {
-        Pane clip = new Pane();
-        path.clipProperty().set(clip);
-
-        Circle pen = new Circle(0, 0, 20);
-
-        ChangeListener pen_Listener = new ChangeListener() {
-            @Override
-            public void changed(ObservableValue observableValue, Object o1, Object o2) {
-                Circle clip_eraser = new Circle(pen.getTranslateX(), pen.getTranslateY(), pen.getRadius());
-                clip.getChildren().add(clip_eraser);
-            }
-        };
+    // returns an animation that draws the path from start to end over the specified duration
+    // the stroke is dashed with one dash as long as the path and one gap, and moving the dash offset from the full
+    // length to 0 slides the dash onto the path, so no extra nodes are created while it plays
+    private Animation strokeAnimation(Path path, double length, Duration duration) {
+        // nothing to draw, return an animation that just waits so callbacks still run
+        if (length <= 0) return new PauseTransition(duration);
 
-        pen.translateXProperty().addListener(pen_Listener);
-        pen.translateYProperty().addListener(pen_Listener);
-        pen.rotateProperty().addListener(pen_Listener);
+        path.getStrokeDashArray().setAll(length, length);
+        path.setStrokeDashOffset(length);
 
-        PathTransition pathTransition = new PathTransition(duration, path, pen);
-        pathTransition.setOnFinished(e -> {
-            path.setClip(null);
-            clip.getChildren().clear();
-        });
+        return new Timeline(
+                new KeyFrame(Duration.ZERO, new KeyValue(path.strokeDashOffsetProperty(), length)),
+                new KeyFrame(duration, new KeyValue(path.strokeDashOffsetProperty(), 0))
+        );
+    }
 
-        return pathTransition;
+    // returns the total length of the straight segments in a path made of MoveTo and LineTo elements
+    private double lineLength(Path path) {
+        double length = 0;
+        double x = 0;
+        double y = 0;
+        for (PathElement element : path.getElements()) {
+            if (element instanceof MoveTo) {
+                x = ((MoveTo) element).getX();
+                y = ((MoveTo) element).getY();
+            } else if (element instanceof LineTo) {
+                LineTo lineTo = (LineTo) element;
+                length += Math.hypot(lineTo.getX() - x, lineTo.getY() - y);
+                x = lineTo.getX();
+                y = lineTo.getY();
+            }
+        }
+        return length;
     }
 }
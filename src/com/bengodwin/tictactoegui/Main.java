@@ -21,6 +21,12 @@ public class Main extends Application {
 
     }
 
+    // flushes and closes the game journal before the JVM exits
+    @Override
+    public void stop() {
+        Controller.closeJournal();
+    }
+
 
     public static void main(String[] args) {
         launch(args);
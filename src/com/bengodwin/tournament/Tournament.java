@@ -0,0 +1,217 @@
+package com.bengodwin.tournament;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.GameState;
+import com.bengodwin.game.MctsStrategy;
+import com.bengodwin.game.MonteCarloStrategy;
+import com.bengodwin.game.MoveStrategy;
+import com.bengodwin.game.NegamaxSolver;
+import com.bengodwin.game.PositionTable;
+import com.bengodwin.game.RandomStrategy;
+import com.bengodwin.game.WeightCache;
+import com.bengodwin.journal.GameJournal;
+import com.bengodwin.journal.GameRecord;
+import com.bengodwin.metrics.EngineMetrics;
+import com.bengodwin.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// plays a batch of games between two strategies on every core and reports results, speed and move latency
+//
+// usage: Tournament <strategy A> <strategy B> [games] [threads] [seed] [journal file]
+// strategies are EASY, MEDIUM, MEDIUM_CACHED, IMPOSSIBLE, NEGAMAX or MCTS, with an optional setting after a colon:
+//   MEDIUM:<simulations per space>[:<target ms per move>]   MEDIUM_FIXED:<simulations per space>   MCTS:<iterations>
+// MEDIUM_CACHED takes the same settings as MEDIUM and shares sim results between its games through a cache that
+// belongs to the run, like MEDIUM in the game does with -Dtictactoe.weightCache.size set.
+// A plays X (moves first) in even numbered games and O in odd numbered games. Games are seeded from the seed and
+// their number, so a run can be repeated exactly, except that with MEDIUM_CACHED on more than one thread the cached
+// results depend on the order games finish in. With a journal file games are appended to it as GameRecords under the
+// mode O plays as, so only games where O is EASY, MEDIUM, MEDIUM_CACHED or IMPOSSIBLE with no settings are recorded
+public class Tournament {
+    private static final int CACHE_CAPACITY = 4096;
+
+    private final String specA;
+    private final String specB;
+    // results from A's point of view
+    private final AtomicLong winsA = new AtomicLong();
+    private final AtomicLong draws = new AtomicLong();
+    private final AtomicLong lossesA = new AtomicLong();
+    private final LatencyHistogram latencyA = new LatencyHistogram();
+    private final LatencyHistogram latencyB = new LatencyHistogram();
+    private GameJournal journal;
+    // shared by the MEDIUM_CACHED games of the current run, null when neither strategy uses it
+    private WeightCache cache;
+
+    public Tournament(String specA, String specB) {
+        this.specA = specA;
+        this.specB = specB;
+        // check both specs before any games start
+        createStrategy(specA, null);
+        createStrategy(specB, null);
+    }
+
+    // returns a new strategy for a spec such as MEDIUM or MCTS:5000, MEDIUM_CACHED uses the cache if it isn't null
+    public static MoveStrategy createStrategy(String spec, WeightCache cache) {
+        String[] parts = spec.split(":");
+        String name = parts[0].toUpperCase();
+        Integer setting = parts.length > 1 ? Integer.valueOf(parts[1]) : null;
+        long target = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+        switch (name) {
+            case "EASY":
+                return new RandomStrategy();
+            case "MEDIUM":
+            case "MEDIUM_CACHED":
+            case "MEDIUM_FIXED":
+                MonteCarloStrategy monteCarlo = setting != null ? new MonteCarloStrategy(setting) : new MonteCarloStrategy();
+                monteCarlo.setAdaptive(!name.equals("MEDIUM_FIXED"));
+                monteCarlo.setTargetMillis(target);
+                if (name.equals("MEDIUM_CACHED")) monteCarlo.setCache(cache);
+                // games already run in parallel, so each search stays on its game's thread
+                monteCarlo.setParallelism(1);
+                return monteCarlo;
+            case "IMPOSSIBLE":
+                return PositionTable.getInstance();
+            case "NEGAMAX":
+                return new NegamaxSolver();
+            case "MCTS":
+                return setting != null ? new MctsStrategy(setting, 0) : new MctsStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + spec);
+        }
+    }
+
+    // returns the game mode whose computer plays like the spec, or null if the spec isn't one of the game's modes
+    public static Game.Mode modeFor(String spec) {
+        switch (spec.toUpperCase()) {
+            case "EASY":
+                return Game.Mode.EASY;
+            case "MEDIUM":
+            case "MEDIUM_CACHED":
+                return Game.Mode.MEDIUM;
+            case "IMPOSSIBLE":
+                return Game.Mode.IMPOSSIBLE;
+            default:
+                return null;
+        }
+    }
+
+    // records every game played from now on in the journal, which is left open
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    // plays the games split across the given number of threads
+    public void run(int games, int threads, long seed) throws Exception {
+        // every run starts with an empty cache so earlier runs don't change its results
+        cache = usesCache(specA) || usesCache(specB) ? new WeightCache(CACHE_CAPACITY, 0, true) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            tasks.add(executor.submit(() -> {
+                for (int g = first; g < games; g += threads) {
+                    playGame(g, seed + g);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+    }
+
+    private static boolean usesCache(String spec) {
+        return spec.split(":")[0].equalsIgnoreCase("MEDIUM_CACHED");
+    }
+
+    // plays one game, the computer side of the Game is whichever strategy plays O
+    private void playGame(int number, long seed) throws IOException {
+        boolean aIsX = number % 2 == 0;
+        String specO = aIsX ? specB : specA;
+        MoveStrategy x = createStrategy(aIsX ? specA : specB, cache);
+        MoveStrategy o = createStrategy(specO, cache);
+        Game.Mode mode = modeFor(specO);
+        LatencyHistogram xLatency = aIsX ? latencyA : latencyB;
+        LatencyHistogram oLatency = aIsX ? latencyB : latencyA;
+
+        Game game = new Game();
+        // the mode is only used to label the game in the journal
+        if (mode != null) game.setMode(mode);
+        game.setStrategy(o);
+        // the strategies are being compared, so neither side gets moves from an opening book
+        game.setOpeningBook(null);
+        game.setSeed(seed);
+        Random random = game.getRandom();
+
+        while (game.getGameState() == GameState.UNFINISHED) {
+            long start = System.nanoTime();
+            int space = x.selectMove(game.getPlayerBits(), game.getComputerBits(), random);
+            xLatency.record(System.nanoTime() - start);
+            game.enterMove(space);
+            if (game.getGameState() != GameState.UNFINISHED) break;
+
+            start = System.nanoTime();
+            game.computerMove();
+            oLatency.record(System.nanoTime() - start);
+        }
+
+        // games O didn't play as one of the modes would mix into that mode's statistics, so they aren't recorded
+        if (journal != null && mode != null) journal.append(GameRecord.of(game));
+
+        GameState result = game.getGameState();
+        if (result == GameState.DRAW) draws.incrementAndGet();
+        else if ((result == GameState.PLAYER_WON) == aIsX) winsA.incrementAndGet();
+        else lossesA.incrementAndGet();
+    }
+
+    public void printReport(long elapsedNanos) {
+        long games = winsA.get() + draws.get() + lossesA.get();
+        System.out.printf("%s vs %s, %d games in %.2f s (%.0f games/sec)%n", specA, specB, games, elapsedNanos / 1e9, games / (elapsedNanos / 1e9));
+        System.out.printf("%s wins %.1f%%, draws %.1f%%, %s wins %.1f%%%n",
+                specA, 100.0 * winsA.get() / games, 100.0 * draws.get() / games, specB, 100.0 * lossesA.get() / games);
+        printLatency(specA, latencyA);
+        printLatency(specB, latencyB);
+        if (cache != null) {
+            System.out.printf("MEDIUM_CACHED cache: %d hits, %d misses, %d evictions, %d entries%n", cache.getHits(), cache.getMisses(), cache.getEvictions(), cache.size());
+        }
+        if (EngineMetrics.ENABLED) System.out.println(EngineMetrics.getInstance().toJson());
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("%s move latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f (%d moves)%n", name,
+                histogram.percentile(0.5) / 1e3, histogram.percentile(0.9) / 1e3, histogram.percentile(0.99) / 1e3,
+                histogram.percentile(0.999) / 1e3, histogram.percentile(1.0) / 1e3, histogram.getCount());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: Tournament <strategy A> <strategy B> [games] [threads] [seed] [journal file]");
+            System.out.println("strategies: EASY, MEDIUM[:sims[:target ms]], MEDIUM_CACHED[:sims[:target ms]], MEDIUM_FIXED[:sims], IMPOSSIBLE, NEGAMAX, MCTS[:iterations]");
+            return;
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        GameJournal journal = args.length > 5 ? new GameJournal(Paths.get(args[5])) : null;
+        if (journal != null && modeFor(args[0]) == null && modeFor(args[1]) == null) {
+            System.out.println("Neither strategy plays as a game mode, no games will be journaled");
+        }
+
+        Tournament tournament = new Tournament(args[0], args[1]);
+        tournament.setJournal(journal);
+        long start = System.nanoTime();
+        tournament.run(games, threads, seed);
+        if (journal != null) journal.close();
+        tournament.printReport(System.nanoTime() - start);
+    }
+}
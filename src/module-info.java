@@ -1,7 +1,10 @@
 module TicTacToeGui {
     requires javafx.fxml;
     requires javafx.controls;
+    requires java.management;
+    requires jdk.management;
 
     exports com.bengodwin.tictactoegui;
     opens com.bengodwin.tictactoegui to javafx.fxml;
+    exports com.bengodwin.metrics to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.bengodwin.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// plain minimax over the whole game tree with its own win check, to test the solvers against
+// scores use NegamaxSolver's scale: 1 plus the empty spaces left for a win, the negative of that for a loss, 0 a draw
+final class BruteForce {
+    private static final int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int[] VALUES = new int[Bitboard.POSITION_COUNT];
+
+    static {
+        Arrays.fill(VALUES, UNKNOWN);
+    }
+
+    private BruteForce() {
+    }
+
+    static boolean hasLine(int bits) {
+        for (int line : LINES) {
+            if ((bits & line) == line) return true;
+        }
+        return false;
+    }
+
+    // true if the side that just moved (opponentBits) has won or the board is full
+    static boolean isFinished(int ownBits, int opponentBits) {
+        return hasLine(opponentBits) || (ownBits | opponentBits) == Bitboard.FULL;
+    }
+
+    // value of the position for the side to move
+    static int value(int ownBits, int opponentBits) {
+        int empty = Bitboard.FULL & ~(ownBits | opponentBits);
+        if (hasLine(opponentBits)) return -(1 + Integer.bitCount(empty));
+        if (empty == 0) return 0;
+        int index = Bitboard.positionIndex(ownBits, opponentBits);
+        if (VALUES[index] != UNKNOWN) return VALUES[index];
+        int best = Integer.MIN_VALUE;
+        for (int space = 1; space <= 9; space++) {
+            int bit = 1 << (space - 1);
+            if ((empty & bit) != 0) best = Math.max(best, -value(opponentBits, ownBits | bit));
+        }
+        VALUES[index] = best;
+        return best;
+    }
+
+    // value for the side to move after it plays the space
+    static int valueOfMove(int ownBits, int opponentBits, int space) {
+        return -value(opponentBits, ownBits | 1 << (space - 1));
+    }
+
+    // every unfinished position that can be reached by alternating moves from the empty board, as {own, opponent}
+    // from the point of view of the side to move
+    static List<int[]> unfinishedPositions() {
+        List<int[]> positions = new ArrayList<>();
+        boolean[] seen = new boolean[Bitboard.POSITION_COUNT];
+        collect(0, 0, seen, positions);
+        return positions;
+    }
+
+    private static void collect(int ownBits, int opponentBits, boolean[] seen, List<int[]> positions) {
+        int index = Bitboard.positionIndex(ownBits, opponentBits);
+        if (seen[index] || isFinished(ownBits, opponentBits)) return;
+        seen[index] = true;
+        positions.add(new int[]{ownBits, opponentBits});
+        for (int space = 1; space <= 9; space++) {
+            int bit = 1 << (space - 1);
+            if (((ownBits | opponentBits) & bit) == 0) collect(opponentBits, ownBits | bit, seen, positions);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bengodwin.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MctsStrategyTest {
+    @Test
+    void alwaysPicksAnEmptySpaceWithATinyTimeBudget() {
+        Random random = new Random(1);
+        for (int[] position : BruteForce.unfinishedPositions()) {
+            // a new strategy each time so no tree is reused and the search starts from an empty root
+            MctsStrategy strategy = new MctsStrategy(0, 1);
+            int move = strategy.selectMove(position[0], position[1], random);
+            assertTrue(move >= 1 && move <= 9, NegamaxSolverTest.describe(position[0], position[1]));
+            assertTrue(Bitboard.isEmpty(position[0] | position[1], move), NegamaxSolverTest.describe(position[0], position[1]));
+        }
+    }
+
+    @Test
+    void takesAWinWithAnIterationBudget() {
+        // own tokens on 1 and 2 and the opponent's on 4 and 5, playing 3 wins
+        int own = Bitboard.bit(1) | Bitboard.bit(2);
+        int opponent = Bitboard.bit(4) | Bitboard.bit(5);
+        assertEquals(3, new MctsStrategy(5000, 0).selectMove(own, opponent, new Random(2)));
+    }
+}
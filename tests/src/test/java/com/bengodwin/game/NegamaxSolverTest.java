@@ -0,0 +1,35 @@
+package com.bengodwin.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NegamaxSolverTest {
+    @Test
+    void solvesEveryReachablePosition() {
+        NegamaxSolver solver = new NegamaxSolver(new TranspositionTable());
+        for (int[] position : BruteForce.unfinishedPositions()) {
+            int own = position[0];
+            int opponent = position[1];
+            int expected = BruteForce.value(own, opponent);
+            assertEquals(expected, solver.solve(own, opponent), () -> describe(own, opponent));
+            assertEquals(expected, BruteForce.valueOfMove(own, opponent, solver.bestMove(own, opponent)), () -> describe(own, opponent));
+        }
+    }
+
+    @Test
+    void emptyBoardIsADraw() {
+        assertEquals(0, new NegamaxSolver().solve(0, 0));
+    }
+
+    @Test
+    void takesAWinOverABlock() {
+        // own has 1 and 2, opponent has 4 and 5: playing 3 wins, playing 6 only blocks
+        NegamaxSolver solver = new NegamaxSolver();
+        assertEquals(3, solver.bestMove(Bitboard.bit(1) | Bitboard.bit(2), Bitboard.bit(4) | Bitboard.bit(5)));
+    }
+
+    static String describe(int own, int opponent) {
+        return "own " + Integer.toBinaryString(own) + " opponent " + Integer.toBinaryString(opponent);
+    }
+}
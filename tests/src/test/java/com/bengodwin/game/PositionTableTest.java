@@ -0,0 +1,45 @@
+package com.bengodwin.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionTableTest {
+    private final PositionTable table = PositionTable.getInstance();
+
+    @Test
+    void holdsEveryReachableUnfinishedPosition() {
+        List<int[]> positions = BruteForce.unfinishedPositions();
+        assertEquals(4520, positions.size());
+        assertEquals(positions.size(), table.getPositionCount());
+    }
+
+    @Test
+    void storesPerfectMovesAndValues() {
+        for (int[] position : BruteForce.unfinishedPositions()) {
+            int own = position[0];
+            int opponent = position[1];
+            int expected = BruteForce.value(own, opponent);
+            assertEquals(expected, table.value(own, opponent), () -> NegamaxSolverTest.describe(own, opponent));
+            assertEquals(expected, BruteForce.valueOfMove(own, opponent, table.bestMove(own, opponent)), () -> NegamaxSolverTest.describe(own, opponent));
+        }
+    }
+
+    @Test
+    void finishedPositionsHaveNoMove() {
+        // X has the top row
+        assertEquals(-1, table.bestMove(Bitboard.bit(4) | Bitboard.bit(5), Bitboard.bit(1) | Bitboard.bit(2) | Bitboard.bit(3)));
+    }
+
+    @Test
+    void unreachablePositionsFallBackToTheSolver() {
+        // the side to move has two more tokens than the opponent, which alternating moves can't reach
+        int own = Bitboard.bit(1) | Bitboard.bit(9);
+        assertEquals(-1, table.bestMove(own, 0));
+        int space = table.selectMove(own, 0, new Random(1));
+        assertEquals(BruteForce.value(own, 0), BruteForce.valueOfMove(own, 0, space));
+    }
+}
@@ -0,0 +1,184 @@
+package com.bengodwin.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightCacheTest {
+    private static final int MAX_SIMS = 1000;
+
+    @Test
+    void matchesAMapUnderRandomAddsAndClears() {
+        // room for every position, so nothing is evicted and the cache should hold exactly what the map does
+        WeightCache cache = new WeightCache(4 * Bitboard.POSITION_COUNT, 0, true);
+        Map<Integer, int[]> expected = new HashMap<>();
+        Random random = new Random(1);
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        for (int i = 0; i < 500000; i++) {
+            int position = random.nextInt(Bitboard.POSITION_COUNT);
+            int operation = random.nextInt(100);
+            if (operation == 0) {
+                cache.clear();
+                expected.clear();
+            } else if (operation < 50) {
+                for (int space = 1; space <= 9; space++) {
+                    sims[space] = random.nextInt(4) == 0 ? 0 : random.nextInt(300);
+                    weights[space] = sims[space] == 0 ? 0 : random.nextInt(2 * sims[space] + 1) - sims[space];
+                }
+                assertEquals(addTo(expected, position, weights, sims), cache.add(position, weights, sims, MAX_SIMS));
+            } else {
+                int[] entry = expected.get(position);
+                assertEquals(entry != null, cache.get(position, weights, sims));
+                if (entry != null) {
+                    assertArrayEquals(Arrays.copyOfRange(entry, 1, 10), Arrays.copyOfRange(weights, 1, 10));
+                    assertArrayEquals(Arrays.copyOfRange(entry, 11, 20), Arrays.copyOfRange(sims, 1, 10));
+                }
+            }
+            if (i % 1000 == 0) assertEquals(expected.size(), cache.size());
+        }
+        assertEquals(0, cache.getEvictions());
+    }
+
+    // the reference version of WeightCache.add, entries are the weights for spaces 1 - 9 then the sims at 11 - 19
+    private static boolean addTo(Map<Integer, int[]> map, int position, int[] weights, int[] sims) {
+        int[] entry = map.getOrDefault(position, new int[20]);
+        boolean added = false;
+        for (int space = 1; space <= 9; space++) {
+            if (sims[space] == 0 || entry[10 + space] + sims[space] > MAX_SIMS) continue;
+            entry[space] += weights[space];
+            entry[10 + space] += sims[space];
+            added = true;
+        }
+        if (added) map.put(position, entry);
+        return added;
+    }
+
+    @Test
+    void staysWithinItsCapacity() {
+        WeightCache cache = new WeightCache(64, 0, false);
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        Arrays.fill(sims, 1);
+        for (int position = 0; position < Bitboard.POSITION_COUNT; position++) {
+            assertTrue(cache.add(position, weights, sims, MAX_SIMS));
+            assertTrue(cache.size() <= 64);
+            // the entry just added is never the one evicted to make room for it
+            assertTrue(cache.get(position, weights, sims));
+        }
+        assertEquals(Bitboard.POSITION_COUNT - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    void doesNotAddEntriesWithoutSims() {
+        WeightCache cache = new WeightCache(64, 0, true);
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        assertFalse(cache.add(7, weights, sims, MAX_SIMS));
+        assertEquals(0, cache.size());
+        assertFalse(cache.get(7, weights, sims));
+    }
+
+    @Test
+    void concurrentAddsNeverPassMaxSims() throws Exception {
+        WeightCache cache = new WeightCache(64, 0, true);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    int[] weights = new int[10];
+                    int[] sims = new int[10];
+                    Arrays.fill(weights, 1);
+                    Arrays.fill(sims, 1);
+                    int added = 0;
+                    for (int i = 0; i < 10000; i++) {
+                        if (cache.add(42, weights, sims, MAX_SIMS)) added++;
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for (Future<Integer> future : futures) {
+                added += future.get();
+            }
+            assertEquals(MAX_SIMS, added);
+        } finally {
+            executor.shutdown();
+        }
+
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        assertTrue(cache.get(42, weights, sims));
+        for (int space = 1; space <= 9; space++) {
+            assertEquals(MAX_SIMS, sims[space]);
+            assertEquals(MAX_SIMS, weights[space]);
+        }
+    }
+
+    @Test
+    void sharedMonteCarloSearchesStopAtTheirNumberOfSims() throws Exception {
+        WeightCache cache = new WeightCache(4096, 0, true);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    MonteCarloStrategy strategy = new MonteCarloStrategy(200);
+                    strategy.setAdaptive(false);
+                    strategy.setCache(cache);
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 50; i++) {
+                        int move = strategy.selectMove(0, 0, random);
+                        assertTrue(move >= 1 && move <= 9, "move " + move);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        assertTrue(cache.get(Symmetry.keyIndex(Symmetry.canonicalKey(0, 0)), weights, sims));
+        for (int space = 1; space <= 9; space++) {
+            assertTrue(sims[space] <= 200, "space " + space + " has " + sims[space] + " sims");
+        }
+    }
+
+    @Test
+    void expiresEntriesThatHaveNotBeenWritten() throws InterruptedException {
+        WeightCache cache = new WeightCache(64, 50, true);
+        int[] weights = new int[10];
+        int[] sims = new int[10];
+        Arrays.fill(sims, 1);
+        assertTrue(cache.add(3, weights, sims, MAX_SIMS));
+        assertTrue(cache.get(3, weights, sims));
+        Thread.sleep(200);
+        assertFalse(cache.get(3, weights, sims));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+}
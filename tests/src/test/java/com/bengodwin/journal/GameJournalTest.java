@@ -0,0 +1,203 @@
+package com.bengodwin.journal;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.GameSnapshot;
+import com.bengodwin.game.GameState;
+import com.bengodwin.game.Player;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GameJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsRoundTripThroughBitsAndBuffers() {
+        Random random = new Random(1);
+        ByteBuffer buffer = ByteBuffer.allocate(GameRecord.SIZE);
+        for (int i = 0; i < 10000; i++) {
+            Game game = randomGame(random);
+            GameRecord record = GameRecord.of(game);
+            assertEquals(game.getMode(), record.getMode());
+            assertEquals(game.getGameState(), record.getResult());
+            assertEquals(game.getMoveCount(), record.getMoveCount());
+            for (int move = 0; move < game.getMoveCount(); move++) {
+                assertEquals(game.getMove(move), record.getMove(move));
+            }
+
+            GameSnapshot end = record.snapshotAfter(record.getMoveCount());
+            assertEquals(game.getPlayerBits(), end.getPlayerBits());
+            assertEquals(game.getComputerBits(), end.getComputerBits());
+            assertEquals(game.getGameState(), end.getGameState());
+
+            assertEquals(record, GameRecord.fromBits(record.getBits()));
+            buffer.clear();
+            record.write(buffer);
+            buffer.flip();
+            assertEquals(record, GameRecord.read(buffer));
+        }
+        // more than nine moves, or bits above the 48 a record takes up
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.fromBits(10L << 5));
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.fromBits(1L << 48));
+    }
+
+    @Test
+    void readsBackEveryRecordInOrder() throws IOException {
+        Path path = dir.resolve("games.journal");
+        List<GameRecord> records = randomRecords(new Random(2), 20000);
+        // more records than fit in the journal's and the reader's buffers
+        try (GameJournal journal = new GameJournal(path)) {
+            for (GameRecord record : records) {
+                journal.append(record);
+            }
+            journal.commit();
+            assertEquals(records.size(), journal.getAppendedCount());
+            assertEquals(records.size(), JournalReader.recordCount(path));
+        }
+        assertEquals(records, readAll(new JournalReader(path)));
+
+        try (JournalReader reader = new JournalReader(path, 9000, 100)) {
+            for (int i = 9000; i < 9100; i++) {
+                assertEquals(records.get(i), reader.next());
+            }
+            assertNull(reader.next());
+        }
+        // a range running past the end stops at the last record
+        assertEquals(records.subList(19990, 20000), readAll(new JournalReader(path, 19990, 100)));
+
+        // opening the journal again appends after the records already in it
+        List<GameRecord> more = randomRecords(new Random(3), 10);
+        try (GameJournal journal = new GameJournal(path)) {
+            for (GameRecord record : more) {
+                journal.append(record);
+            }
+        }
+        records.addAll(more);
+        assertEquals(records, readAll(new JournalReader(path)));
+    }
+
+    @Test
+    void keepsEveryRecordFromConcurrentWriters() throws Exception {
+        Path path = dir.resolve("games.journal");
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<GameRecord, Integer> expected = new HashMap<>();
+        try (GameJournal journal = new GameJournal(path)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<GameRecord> records = randomRecords(new Random(100 + t), perThread);
+                for (GameRecord record : records) {
+                    expected.merge(record, 1, Integer::sum);
+                }
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < records.size(); i++) {
+                        journal.append(records.get(i));
+                        // commits from many threads at once share the flushes
+                        if (i % 100 == 99) journal.commit();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(threads * perThread, journal.getAppendedCount());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals((long) threads * perThread * GameRecord.SIZE, Files.size(path));
+        Map<GameRecord, Integer> actual = new HashMap<>();
+        for (GameRecord record : readAll(new JournalReader(path))) {
+            actual.merge(record, 1, Integer::sum);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void recoversFromATornRecord() throws IOException {
+        Path path = dir.resolve("games.journal");
+        List<GameRecord> records = randomRecords(new Random(4), 1000);
+        try (GameJournal journal = new GameJournal(path)) {
+            for (GameRecord record : records) {
+                journal.append(record);
+            }
+        }
+        // the first bytes of a record that a crash cut short
+        Files.write(path, new byte[] {1, 2, 3, 4}, StandardOpenOption.APPEND);
+
+        // readers skip the partial record
+        assertEquals(records.size(), JournalReader.recordCount(path));
+        assertEquals(records, readAll(new JournalReader(path)));
+
+        // reopening cuts it off so new records line up again
+        List<GameRecord> more = randomRecords(new Random(5), 1000);
+        try (GameJournal journal = new GameJournal(path)) {
+            for (GameRecord record : more) {
+                journal.append(record);
+            }
+        }
+        records.addAll(more);
+        assertEquals((long) records.size() * GameRecord.SIZE, Files.size(path));
+        assertEquals(records, readAll(new JournalReader(path)));
+    }
+
+    @Test
+    void rejectsAppendsAfterClose() throws IOException {
+        GameJournal journal = new GameJournal(dir.resolve("games.journal"));
+        journal.close();
+        journal.close();
+        GameRecord record = randomRecords(new Random(6), 1).get(0);
+        assertThrows(IOException.class, () -> journal.append(record));
+    }
+
+    private static List<GameRecord> readAll(JournalReader reader) throws IOException {
+        List<GameRecord> records = new ArrayList<>();
+        try (reader) {
+            reader.forEach(records::add);
+        }
+        return records;
+    }
+
+    private static List<GameRecord> randomRecords(Random random, int count) {
+        List<GameRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(GameRecord.of(randomGame(random)));
+        }
+        return records;
+    }
+
+    // a game played with random moves by either side first, stopped at a random point or when it is finished
+    private static Game randomGame(Random random) {
+        Game game = new Game();
+        game.setMode(Game.Mode.TWO_PLAYER);
+        if (random.nextBoolean()) game.setLastPlayed(Player.USER);
+        int moves = random.nextInt(10);
+        for (int i = 0; i < moves && game.getGameState() == GameState.UNFINISHED; i++) {
+            int space;
+            do {
+                space = 1 + random.nextInt(9);
+            } while (game.enterTwoPlayerMove(space) < 0);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,141 @@
+package com.bengodwin.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameServerTest {
+    private GameServer server;
+    private Socket socket;
+    private BufferedReader in;
+    private OutputStream out;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new GameServer(0, 2);
+        Thread thread = new Thread(server, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+        socket = new Socket("127.0.0.1", server.getPort());
+        socket.setSoTimeout(30000);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        out = socket.getOutputStream();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        socket.close();
+        server.close();
+    }
+
+    private void send(String lines) throws IOException {
+        out.write(lines.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private String request(String line) throws IOException {
+        send(line + "\n");
+        return in.readLine();
+    }
+
+    @Test
+    void playsAGame() throws IOException {
+        String created = request("NEW IMPOSSIBLE");
+        assertTrue(created.startsWith("OK "), created);
+        long id = Long.parseLong(created.substring(3));
+        assertEquals(1, server.getGameCount());
+
+        assertEquals("OK UNFINISHED", request("MOVE " + id + " 1"));
+        // the perfect reply to a corner is the center
+        assertEquals("OK 5 UNFINISHED", request("AI " + id));
+        assertEquals("ERR illegal move", request("MOVE " + id + " 5"));
+        assertEquals("ERR not the computer's turn", request("AI " + id));
+
+        assertEquals("OK", request("END " + id));
+        assertEquals("ERR unknown game", request("END " + id));
+        assertEquals(0, server.getGameCount());
+    }
+
+    @Test
+    void repliesErrToBadRequests() throws IOException {
+        assertEquals("ERR unknown request", request("HELLO"));
+        assertEquals("ERR bad request", request("NEW"));
+        assertEquals("ERR bad request", request("NEW HARD"));
+        assertEquals("ERR unsupported mode", request("NEW TWO_PLAYER"));
+        assertEquals("ERR bad request", request("MOVE x 1"));
+        assertEquals("ERR unknown game", request("MOVE 12345 1"));
+        assertEquals("ERR unknown game", request("AI 12345"));
+        // the connection is still usable
+        assertTrue(request("NEW EASY").startsWith("OK "));
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() throws IOException {
+        StringBuilder requests = new StringBuilder();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            requests.append(i % 2 == 0 ? "NEW EASY\n" : "END 999999\n");
+        }
+        send(requests.toString());
+        for (int i = 0; i < count; i++) {
+            String reply = in.readLine();
+            if (i % 2 == 0) assertTrue(reply.startsWith("OK "), reply);
+            else assertEquals("ERR unknown game", reply);
+        }
+        assertEquals(count / 2, server.getGameCount());
+    }
+
+    @Test
+    void evaluatesBoards() throws IOException {
+        // X to move wins in space 3 with 4 spaces left, O to move wins in space 6 with 3 left, a won board has no move
+        // and is lost for the side to move
+        assertEquals("OK 3:5 6:4 -1:-5", request("EVAL XX.OO.... XX.OO.X.. XXXOO...."));
+        assertEquals("ERR bad request", request("EVAL XXX"));
+        assertEquals("ERR bad request", request("EVAL XX......."));
+    }
+
+    @Test
+    void evaluatesEvalLinesLongerThanOtherRequests() throws IOException {
+        // 30 boards are longer than any other request may be, 2000 go through the bucketed path and
+        // MAX_EVAL_BOARDS through the parallel one
+        for (int count : new int[] {30, 2000, GameServer.MAX_EVAL_BOARDS}) {
+            String[] scores = evaluate(count).split(" ");
+            assertEquals("OK", scores[0]);
+            assertEquals(count + 1, scores.length);
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 2 == 0 ? "3:5" : "6:4", scores[i + 1]);
+            }
+        }
+    }
+
+    @Test
+    void repliesErrToLinesThatAreTooLong() throws IOException {
+        StringBuilder line = new StringBuilder("NEW EASY");
+        while (line.length() <= 256) line.append(' ');
+        assertEquals("ERR request too long", request(line + "x"));
+        // the rest of the long line is skipped and the next request is read from the start
+        assertTrue(request("NEW EASY").startsWith("OK "));
+
+        assertEquals("ERR request too long", evaluate(GameServer.MAX_EVAL_BOARDS + 1));
+        assertEquals("OK 3:5", request("EVAL XX.OO...."));
+    }
+
+    // sends an EVAL request for count boards, alternating between two with known answers, and returns the reply
+    private String evaluate(int count) throws IOException {
+        StringBuilder line = new StringBuilder("EVAL");
+        for (int i = 0; i < count; i++) {
+            line.append(i % 2 == 0 ? " XX.OO...." : " XX.OO.X..");
+        }
+        return request(line.toString());
+    }
+}
@@ -0,0 +1,105 @@
+package com.bengodwin.server;
+
+import com.bengodwin.game.Game;
+import com.bengodwin.game.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRegistryTest {
+    @Test
+    void matchesAMapUnderRandomCreateMoveAndRemove() {
+        // one stripe so every session shares a table, which grows and has entries shifted back on delete
+        SessionRegistry registry = new SessionRegistry(1, 3600);
+        Map<Long, Integer> expected = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || ids.isEmpty()) {
+                long id = registry.create(Game.Mode.EASY);
+                ids.add(id);
+                expected.put(id, registry.apply(id, Game::pack));
+            } else if (operation < 5) {
+                long id = ids.remove(random.nextInt(ids.size()));
+                assertTrue(registry.remove(id));
+                assertFalse(registry.remove(id));
+                expected.remove(id);
+            } else {
+                long id = ids.get(random.nextInt(ids.size()));
+                int space = 1 + random.nextInt(9);
+                registry.apply(id, game -> game.enterMove(space));
+                Game game = Game.unpack(expected.get(id));
+                game.enterMove(space);
+                expected.put(id, game.pack());
+            }
+        }
+        assertEquals(expected.size(), registry.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), registry.apply(entry.getKey(), Game::pack));
+        }
+        assertNull(registry.apply(-5, Game::pack));
+    }
+
+    @Test
+    void evictsOnlyIdleSessions() throws InterruptedException {
+        SessionRegistry registry = new SessionRegistry(4, 1);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(registry.create(Game.Mode.EASY));
+        }
+        Thread.sleep(2100);
+        // use every other session, the rest have been idle for more than the timeout
+        for (int i = 0; i < ids.size(); i += 2) {
+            registry.apply(ids.get(i), Game::pack);
+        }
+        assertEquals(500, registry.evictIdle());
+        assertEquals(500, registry.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i % 2 == 0, registry.apply(ids.get(i), Game::pack) != null);
+        }
+    }
+
+    @Test
+    void concurrentActionsOnOneSessionAreNotLost() throws Exception {
+        SessionRegistry registry = new SessionRegistry(4, 3600);
+        long id = registry.create(Game.Mode.EASY);
+        AtomicInteger moves = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int space = 1 + (i + thread) % 9;
+                    boolean moved = registry.apply(id, game -> game.getLastPlayed() == Player.COMPUTER
+                            ? game.enterMove(space)
+                            : game.computerMove() > 0);
+                    if (moved) moves.incrementAndGet();
+                    // churn the other sessions so slots move while actions run
+                    registry.remove(registry.create(Game.Mode.EASY));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertEquals(moves.get(), (int) registry.apply(id, game -> Integer.bitCount(game.getOccupiedBits())));
+        assertEquals(1, registry.size());
+    }
+}